@@ -19,7 +19,6 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import app.evaluation.*;
 import model.loader.BulkContentLoader;
 import utils.TextUtils;
-import utils.Utils;
 
 public class App {
 	
@@ -101,8 +100,6 @@ public class App {
 	 */
 	public static void conductExperiment(Configuration simConfig) {
 		
-		Utils.setLearningActive(false);
-		
 		switch (simConfig.getExpType()) {
 		case INTERNAL://intentionally cascades 
 			double[] threshold = {0};
@@ -113,6 +110,11 @@ public class App {
 			Evaluator evaluator = new Evaluator(simConfig, cLoader);
 			evaluator.evaluate();
 			break;
+		case THRESHOLD_SEARCH:
+			BulkContentLoader sLoader = new BulkContentLoader(
+					null, simConfig.getTagFile(), simConfig.getTrainingFile());
+			new Evaluator(simConfig, sLoader).evaluate();
+			break;
 		/*case TAG:
 			TagEvaluator tEvaluator = new TagEvaluator(simConfig);
 			tEvaluator.numberOfTagsEvaluation();
@@ -7,6 +7,7 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import model.experiment.ExperimentType;
+import model.privacy.SketchTagTable;
 
 /**
  * Configuration class includes all the information required to conduct a simulation experiment.
@@ -74,6 +75,69 @@ public class Configuration {
 	 */
 	private int[] tagNumbers;
 	
+	/**
+	 * Directory of the training snapshots. If it is given, trained states are saved 
+	 * after the training phase and reused by later runs with the same training draw
+	 */
+	private String snapshotDir;
+	
+	/**
+	 * Half-life of the tag table values in number of contents. 
+	 * If it is given, old contents weigh less and rarely seen tags are dropped from the tables
+	 */
+	private double tagHalfLife;
+	
+	/**
+	 * Width of the count-min sketches that replace the internal tag tables. 
+	 * If it is given, agents keep approximate values in fixed memory instead of a row per tag
+	 */
+	private int sketchWidth;
+	
+	/**
+	 * Depth of the count-min sketches, the default depth is used if it is not given
+	 */
+	private int sketchDepth;
+	
+	/**
+	 * Additive error bound of the count-min sketches relative to the total support of a table.
+	 * If it is given instead of the width, the smallest width that satisfies it is used
+	 */
+	private double sketchError;
+	
+	/**
+	 * If it is true, all the thresholds are scored by a single test phase after each training 
+	 * instead of a test phase for each threshold
+	 */
+	private boolean thresholdSweep;
+	
+	/**
+	 * If it is true, the training sizes share the training of each simulation, 
+	 * which is continued from a training size to the next one
+	 */
+	private boolean trainingSweep;
+	
+	/**
+	 * If it is true, all the numbers of tags share the content draws of each simulation 
+	 * and their environments are trained together
+	 */
+	private boolean tagSweep;
+	
+	/**
+	 * Number of simulations that run in parallel, 0 to run as many as the available processors
+	 */
+	private int workers;
+	
+	/**
+	 * Seed of the random draws of the experiment, 0 to draw a new seed
+	 */
+	private long seed;
+	
+	/**
+	 * If it is true, the simulation with the same index in every cell of the parameter grid
+	 * draws the same random numbers, so the cells are compared under the same draws
+	 */
+	private boolean commonRandomNumbers;
+	
 	private static final Logger LOGGER = Logger.getLogger(Configuration.class.getName());
 
 	/**
@@ -91,6 +155,17 @@ public class Configuration {
 	 * @param newcomer the agent that will join the network in the middle
 	 * @param newcomerTurn the turn that the newcomer agent will join
 	 * @param tagNumbers number of tags will be evaluated
+	 * @param snapshotDir directory of the training snapshots
+	 * @param tagHalfLife half-life of the tag table values, 0 to keep all the values
+	 * @param sketchWidth width of the count-min sketches, 0 to use exact tag tables
+	 * @param sketchDepth depth of the count-min sketches, 0 for the default depth
+	 * @param sketchError error bound of the count-min sketches, 0 if the width is given or the tables are exact
+	 * @param thresholdSweep true to score all the thresholds by a single test phase
+	 * @param trainingSweep true to continue the training from a training size to the next one
+	 * @param tagSweep true to train the environments of all the numbers of tags together
+	 * @param workers number of simulations that run in parallel, 0 for the number of processors
+	 * @param seed seed of the random draws, 0 to draw a new seed
+	 * @param commonRandomNumbers true to use the same draws for the same simulation of every cell
 	 */
 	@JsonCreator
 	public Configuration(@JsonProperty(value = "expType", required = true) ExperimentType expType,
@@ -105,7 +180,18 @@ public class Configuration {
 			@JsonProperty(value = "threshold", required = false) double[] threshold,
 			@JsonProperty(value = "newcomer", required = false) int newcomer,
 			@JsonProperty(value = "newcomerTurn", required = false) int newcomerTurn,
-			@JsonProperty(value = "tagNumbers", required = false) int[] tagNumbers) {
+			@JsonProperty(value = "tagNumbers", required = false) int[] tagNumbers,
+			@JsonProperty(value = "snapshotDir", required = false) String snapshotDir,
+			@JsonProperty(value = "tagHalfLife", required = false) double tagHalfLife,
+			@JsonProperty(value = "sketchWidth", required = false) int sketchWidth,
+			@JsonProperty(value = "sketchDepth", required = false) int sketchDepth,
+			@JsonProperty(value = "sketchError", required = false) double sketchError,
+			@JsonProperty(value = "thresholdSweep", required = false) boolean thresholdSweep,
+			@JsonProperty(value = "trainingSweep", required = false) boolean trainingSweep,
+			@JsonProperty(value = "tagSweep", required = false) boolean tagSweep,
+			@JsonProperty(value = "workers", required = false) int workers,
+			@JsonProperty(value = "seed", required = false) long seed,
+			@JsonProperty(value = "commonRandomNumbers", required = false) boolean commonRandomNumbers) {
 		super();
 		this.expType = expType;
 		this.features = features;
@@ -120,11 +206,57 @@ public class Configuration {
 		this.newcomer = newcomer;
 		this.newcomerTurn = newcomerTurn;
 		this.tagNumbers = tagNumbers;
+		this.snapshotDir = snapshotDir;
+		this.tagHalfLife = tagHalfLife;
+		this.sketchWidth = sketchWidth;
+		this.sketchDepth = sketchDepth != 0 ? sketchDepth : SketchTagTable.DEFAULT_DEPTH;
+		this.sketchError = sketchError;
+		this.thresholdSweep = thresholdSweep;
+		this.trainingSweep = trainingSweep;
+		this.tagSweep = tagSweep;
+		this.workers = workers;
+		this.seed = seed;
+		this.commonRandomNumbers = commonRandomNumbers;
 	}
 	
 	//TODO Experiment type based field check functions
 	public boolean validate() {
 		
+		if(workers < 0) {
+			LOGGER.severe("Number of workers cannot be negative. The experiment cannot be conducted!");
+			return false;
+		}
+		if(tagHalfLife < 0) {
+			LOGGER.severe("Half-life of the tag tables cannot be negative. The experiment cannot be conducted!");
+			return false;
+		}
+		if(sketchWidth < 0) {
+			LOGGER.severe("Width of the sketches cannot be negative. The experiment cannot be conducted!");
+			return false;
+		}
+		if(sketchError < 0 || sketchError >= 1) {
+			LOGGER.severe("Error bound of the sketches must be between 0 and 1. The experiment cannot be conducted!");
+			return false;
+		}
+		if(sketchWidth > 0 && sketchError > 0) {
+			LOGGER.severe("Either the width or the error bound of the sketches must be given, not both. "
+					+ "The experiment cannot be conducted!");
+			return false;
+		}
+		if(getSketchWidth() > 0) {
+			if(sketchDepth < 1 || sketchDepth > SketchTagTable.MAX_DEPTH) {
+				LOGGER.severe("Depth of the sketches must be between 1 and " + SketchTagTable.MAX_DEPTH 
+						+ ". The experiment cannot be conducted!");
+				return false;
+			}
+			if(tagHalfLife > 0) {
+				LOGGER.severe("Sketches do not support the half-life of the tag tables. "
+						+ "The experiment cannot be conducted!");
+				return false;
+			}
+			LOGGER.info("Each tag table will be a " + getSketchWidth() + "x" + sketchDepth + " sketch of "
+					+ SketchTagTable.getMemory(getSketchWidth(), sketchDepth) / 1024 + " KB");
+		}
 		switch (expType) {
 		case INTERNAL:
 			
@@ -163,6 +295,11 @@ public class Configuration {
 			break;
 		case TRUST:
 			break;
+		case THRESHOLD_SEARCH:
+			LOGGER.info("Internal threshold will be searched over all the test predictions"
+					+ (threshold != null && threshold.length > 0 ? 
+							" and reported for threshold:" + Arrays.toString(this.threshold) : ""));
+			break;
 
 		default:
 			return true;
@@ -286,6 +423,101 @@ public class Configuration {
 		this.tagFile = tagFile;
 	}
 
+	public String getSnapshotDir() {
+		return snapshotDir;
+	}
+
+	public void setSnapshotDir(String snapshotDir) {
+		this.snapshotDir = snapshotDir;
+	}
+
+	public double getTagHalfLife() {
+		return tagHalfLife;
+	}
+
+	public void setTagHalfLife(double tagHalfLife) {
+		this.tagHalfLife = tagHalfLife;
+	}
+
+	/**
+	 * Returns the width of the count-min sketches, which is derived from the error bound if only it is given
+	 * @return sketch width, 0 if the tag tables are exact
+	 */
+	public int getSketchWidth() {
+		if(sketchWidth == 0 && sketchError > 0 && sketchError < 1) {
+			return SketchTagTable.widthForError(sketchError);
+		}
+		return sketchWidth;
+	}
+
+	public void setSketchWidth(int sketchWidth) {
+		this.sketchWidth = sketchWidth;
+	}
+
+	public int getSketchDepth() {
+		return sketchDepth;
+	}
+
+	public void setSketchDepth(int sketchDepth) {
+		this.sketchDepth = sketchDepth;
+	}
+
+	public double getSketchError() {
+		return sketchError;
+	}
+
+	public void setSketchError(double sketchError) {
+		this.sketchError = sketchError;
+	}
+
+	public boolean isThresholdSweep() {
+		return thresholdSweep;
+	}
+
+	public void setThresholdSweep(boolean thresholdSweep) {
+		this.thresholdSweep = thresholdSweep;
+	}
+
+	public boolean isTrainingSweep() {
+		return trainingSweep;
+	}
+
+	public void setTrainingSweep(boolean trainingSweep) {
+		this.trainingSweep = trainingSweep;
+	}
+
+	public boolean isTagSweep() {
+		return tagSweep;
+	}
+
+	public void setTagSweep(boolean tagSweep) {
+		this.tagSweep = tagSweep;
+	}
+
+	public int getWorkers() {
+		return workers;
+	}
+
+	public void setWorkers(int workers) {
+		this.workers = workers;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public boolean isCommonRandomNumbers() {
+		return commonRandomNumbers;
+	}
+
+	public void setCommonRandomNumbers(boolean commonRandomNumbers) {
+		this.commonRandomNumbers = commonRandomNumbers;
+	}
+
 	@Override
 	public String toString() {
 		return "Configuration [features=" + features + ", edges=" + edges + ", trainingFile="
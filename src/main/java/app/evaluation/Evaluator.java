@@ -5,15 +5,30 @@ import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import app.App;
 import app.CsvOperator;
 import app.Configuration;
 import model.experiment.ExperimentStats;
+import model.experiment.ExperimentType;
 import model.experiment.Parameters;
+import model.experiment.SimulationContext;
+import model.experiment.ThresholdCurve;
+import model.experiment.ThresholdSweep;
 import model.loader.BulkContentLoader;
 import model.loader.IterativeContentLoader;
 import model.loader.SnapDataLoader;
+import model.loader.TrainingSnapshot;
 import model.network.Environment;
+import model.network.EnvironmentTemplate;
 import model.network.ExternalEnvironment;
 import model.network.RelationType;
 import model.privacy.SharingDecision;
@@ -26,10 +41,60 @@ public class Evaluator {
 	protected StringBuilder sb = new StringBuilder();
 	protected BulkContentLoader cLoader;
 	protected FileOperator fo;
+	/**
+	 * Agents and relations of the social network, loaded once for all the simulations
+	 */
+	private EnvironmentTemplate template;
+	/**
+	 * Settings of the simulations, every environment runs with its own copy of the context
+	 */
+	protected final SimulationContext context = new SimulationContext();
+	/**
+	 * Runs the simulations of each parameter set in parallel
+	 */
+	protected final SimulationRunner runner;
+	/**
+	 * Locks of the snapshot files, which are mapped to their paths
+	 */
+	private final Map<String, Object> snapshotLocks = new ConcurrentHashMap<>();
+	/**
+	 * Splits the random stream of each simulation from the seed of the experiment
+	 */
+	private final SplittableRandom seeds;
+	/**
+	 * Seeds of the simulations shared by all the cells, null unless common random numbers are used
+	 */
+	private final long[] commonSeeds;
+	/**
+	 * Part of the snapshot names that identifies the seed and the data set, null if snapshots are not used
+	 */
+	private final String snapshotKey;
+	private static final Logger LOGGER = Logger.getLogger(App.class.getName());
 
 	public Evaluator(Configuration simConfig, BulkContentLoader cLoader) {
 		this.simConfig = simConfig;
 		this.cLoader = cLoader;
+		this.runner = new SimulationRunner(simConfig.getWorkers());
+		long seed = simConfig.getSeed() != 0 ? simConfig.getSeed() : new SplittableRandom().nextLong();
+		LOGGER.info("Seed of the experiment is " + seed);
+		this.seeds = new SplittableRandom(seed);
+		if(simConfig.isCommonRandomNumbers()) {
+			this.commonSeeds = new long[simConfig.getNumOfSims()];
+			for (int i = 0; i < commonSeeds.length; i++) {
+				commonSeeds[i] = seeds.nextLong();
+			}
+		}
+		else {
+			this.commonSeeds = null;
+		}
+		this.snapshotKey = simConfig.getSnapshotDir() != null ? getSnapshotKey(seed) : null;
+		if(cLoader != null) {
+			//tags of the contents are interned by the loader
+			context.setTagDictionary(cLoader.getTagDictionary());
+		}
+		context.setLearningActive(false);
+		context.setTagHalfLife(simConfig.getTagHalfLife());
+		context.setSketch(simConfig.getSketchWidth(), simConfig.getSketchDepth());
 		File tra = new File(simConfig.getTrainingFile());
 		File tag = new File(simConfig.getTagFile());
 		String filename = LocalDateTime.now().format(TextUtils.FORMATTER).toString() 
@@ -42,6 +107,7 @@ public class Evaluator {
 		this.fo.getCsvWriter().writeNext(TextUtils.HEADERS);
 		
 		changeNumberOfTags();
+		runner.shutdown();
 		
 		System.out.println(sb.toString());
 		try {
@@ -53,108 +119,687 @@ public class Evaluator {
 		}
 	}
 
+	/**
+	 * Submits the simulations of every cell of the parameter grid at once, 
+	 * so the workers move on to the next cells instead of waiting for the slowest simulation of a cell.
+	 * Cells finish in any order, but their results are written in the order of the grid.
+	 */
 	private void changeNumberOfTags() {
 		Parameters param = new Parameters();
-		for(int i = 0; i < simConfig.getTagNumbers().length; i++) {
-			param.nTags = simConfig.getTagNumbers()[i];
-			changeSetSize(param);
+		List<Runnable> writers = new ArrayList<>();
+		if(isTrainedTogether()) {
+			changeSetSizeTogether(param, writers);
+		}
+		else {
+			for(int i = 0; i < simConfig.getTagNumbers().length; i++) {
+				param.nTags = simConfig.getTagNumbers()[i];
+				if(isTrainedIncrementally()) {
+					changeSetSizeIncrementally(param, writers);
+				}
+				else {
+					changeSetSize(param, writers);
+				}
+			}
+		}
+		for(Runnable writer : writers) {
+			writer.run();
 		}
 	}
 
-	private void changeSetSize(Parameters param) {
+	private void changeSetSize(Parameters param, List<Runnable> writers) {
 		for (int i = 0; i < simConfig.getTrainingSizes().length; i++) {
 			for (int j = 0; j < simConfig.getTestSizes().length; j++) {
 				param.training = simConfig.getTrainingSizes()[i];
 				param.test = simConfig.getTestSizes()[j];
-				sb.append("Training = " + param.training + ", Test = " + param.test);
-				changeThreshold(param);
+				Parameters cell = param.copy();
+				writers.add(() -> sb.append("Training = " + cell.training + ", Test = " + cell.test));
+				changeThreshold(param, writers);
+			}
+		}
+	}
+
+	/**
+	 * Checks if the environments of all the numbers of tags can be trained together.
+	 * The contents do not depend on the number of tags except their tags, 
+	 * so the environments can share the draws of the contents and their owners.
+	 * @return true if the tag sweep is enabled and the thresholds can share the training
+	 */
+	private boolean isTrainedTogether() {
+		return simConfig.isTagSweep() && isForkable() && simConfig.getSnapshotDir() == null
+				&& simConfig.getExpType() != ExperimentType.THRESHOLD_SEARCH;
+	}
+
+	/**
+	 * Trains an environment for each number of tags together in each simulation, 
+	 * then runs the test phases of each environment with its own number of tags.
+	 * Results are written in the same order as {@link #changeNumberOfTags()} writes them.
+	 * @param param parameters of the simulation
+	 * @param writers writers of the cells in the order of the grid
+	 */
+	private void changeSetSizeTogether(Parameters param, List<Runnable> writers) {
+		int[] tagNumbers = simConfig.getTagNumbers();
+		int[] trainingSizes = simConfig.getTrainingSizes();
+		int[] testSizes = simConfig.getTestSizes();
+		double[] thresholds = simConfig.getThreshold();
+		List<List<Future<SimulationStats[]>>> cells = new ArrayList<>();
+		List<String[]> cellLogs = new ArrayList<>();
+		for (int i = 0; i < trainingSizes.length; i++) {
+			for (int j = 0; j < testSizes.length; j++) {
+				param.training = trainingSizes[i];
+				param.test = testSizes[j];
+				Parameters cell = param.copy();
+				SplittableRandom[] randoms = newRandoms();
+				String[] logs = new String[simConfig.getNumOfSims()];
+				cellLogs.add(logs);
+				cells.add(runner.submit(simConfig.getNumOfSims(), k -> {
+					Parameters simParam = cell.copy();
+					simParam.threshold = thresholds[0];
+					BulkContentLoader loader = cLoader.copy();
+					long testSeed = randoms[k].nextLong();
+					ExternalEnvironment[] envs = new ExternalEnvironment[tagNumbers.length];
+					for (int v = 0; v < envs.length; v++) {
+						envs[v] = createEnvironment(simParam.threshold, randoms[k]);
+					}
+					//the training draws are made from the first environment only
+					loader.loadTrainingData(envs, tagNumbers, simParam);
+					SimulationStats[] simStats = new SimulationStats[envs.length];
+					for (int v = 0; v < envs.length; v++) {
+						simParam.nTags = tagNumbers[v];
+						simStats[v] = new SimulationStats(thresholds.length);
+						testThresholds(envs[v], simParam, simStats[v], false, loader, testSeed);
+						//the environment is not needed any more
+						envs[v] = null;
+					}
+					logs[k] = loader.takeLog();
+					return simStats;
+				}));
 			}
 		}
+		writers.add(() -> {
+			SimulationStats[][][] stats = 
+					new SimulationStats[tagNumbers.length][trainingSizes.length][testSizes.length];
+			for (int i = 0; i < trainingSizes.length; i++) {
+				for (int j = 0; j < testSizes.length; j++) {
+					for (int v = 0; v < tagNumbers.length; v++) {
+						stats[v][i][j] = new SimulationStats(thresholds.length);
+					}
+					int c = i * testSizes.length + j;
+					for(SimulationStats[] simStats : joinSimulations(cells.get(c), cellLogs.get(c))) {
+						for (int v = 0; v < tagNumbers.length; v++) {
+							stats[v][i][j].addStats(simStats[v]);
+						}
+					}
+				}
+			}
+			Parameters cell = param.copy();
+			for (int v = 0; v < tagNumbers.length; v++) {
+				cell.nTags = tagNumbers[v];
+				for (int i = 0; i < trainingSizes.length; i++) {
+					for (int j = 0; j < testSizes.length; j++) {
+						cell.training = trainingSizes[i];
+						cell.test = testSizes[j];
+						sb.append("Training = " + cell.training + ", Test = " + cell.test);
+						writeThresholds(cell, stats[v][i][j]);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Checks if the training sizes can be swept by continuing the training of the same environment.
+	 * The contents are drawn once for every training size, so a training set is a prefix of the larger ones.
+	 * @return true if the training sweep is enabled and the thresholds can share the training
+	 */
+	private boolean isTrainedIncrementally() {
+		return simConfig.isTrainingSweep() && isForkable() && simConfig.getSnapshotDir() == null
+				&& simConfig.getExpType() != ExperimentType.THRESHOLD_SEARCH;
+	}
+
+	/**
+	 * Sweeps the training sizes in increasing order for each simulation.
+	 * The environment is trained up to the first size, forked for the test phases,
+	 * then trained further with the next contents up to the next size, and so on.
+	 * All the training sizes of a simulation cost about as much as the largest one.
+	 * Results are written in the same order as {@link #changeSetSize(Parameters, List)} writes them.
+	 * @param param parameters of the simulation
+	 * @param writers writers of the cells in the order of the grid
+	 */
+	private void changeSetSizeIncrementally(Parameters param, List<Runnable> writers) {
+		int[] trainingSizes = simConfig.getTrainingSizes();
+		int[] testSizes = simConfig.getTestSizes();
+		double[] thresholds = simConfig.getThreshold();
+		//indices of the training sizes in increasing order of the sizes
+		Integer[] order = new Integer[trainingSizes.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.comparingInt(i -> trainingSizes[i]));
+		Parameters cell = param.copy();
+		SplittableRandom[] randoms = newRandoms();
+		String[] logs = new String[simConfig.getNumOfSims()];
+		List<Future<SimulationStats[][]>> results = runner.submit(simConfig.getNumOfSims(), k -> {
+			Parameters simParam = cell.copy();
+			simParam.threshold = thresholds[0];
+			BulkContentLoader loader = cLoader.copy();
+			long testSeed = randoms[k].nextLong();
+			//the test phases run on forks, so the environment stays in the training phase
+			ExternalEnvironment env = createEnvironment(simParam.threshold, randoms[k]);
+			SimulationStats[][] simStats = new SimulationStats[trainingSizes.length][testSizes.length];
+			loader.drawTrainingData(env, simParam);
+			int trained = 0;
+			for (int n = 0; n < order.length; n++) {
+				int i = order[n];
+				simParam.training = trainingSizes[i];
+				loader.continueTrainingData(env, simParam, trained);
+				trained = simParam.training;
+				//the tables do not grow any more after the largest size
+				if(n == order.length - 1) {
+					env.trimTagTables();
+				}
+				for (int j = 0; j < testSizes.length; j++) {
+					simParam.test = testSizes[j];
+					simStats[i][j] = new SimulationStats(thresholds.length);
+					testThresholds(env, simParam, simStats[i][j], true, loader, testSeed);
+				}
+			}
+			logs[k] = loader.takeLog();
+			return simStats;
+		});
+		writers.add(() -> {
+			SimulationStats[][] stats = new SimulationStats[trainingSizes.length][testSizes.length];
+			for (int i = 0; i < trainingSizes.length; i++) {
+				for (int j = 0; j < testSizes.length; j++) {
+					stats[i][j] = new SimulationStats(thresholds.length);
+				}
+			}
+			for(SimulationStats[][] simStats : joinSimulations(results, logs)) {
+				for (int i = 0; i < trainingSizes.length; i++) {
+					for (int j = 0; j < testSizes.length; j++) {
+						stats[i][j].addStats(simStats[i][j]);
+					}
+				}
+			}
+			for (int i = 0; i < trainingSizes.length; i++) {
+				for (int j = 0; j < testSizes.length; j++) {
+					cell.training = trainingSizes[i];
+					cell.test = testSizes[j];
+					sb.append("Training = " + cell.training + ", Test = " + cell.test);
+					writeThresholds(cell, stats[i][j]);
+				}
+			}
+		});
 	}
 
-	private void changeThreshold(Parameters param) {
+	private void changeThreshold(Parameters param, List<Runnable> writers) {
 
+		if(simConfig.getExpType() == ExperimentType.THRESHOLD_SEARCH) {
+			writers.add(searchThreshold(param.copy()));
+			return;
+		}
+		if(isForkable()) {
+			writers.add(simulateThresholds(param.copy()));
+			return;
+		}
 		for (int i = 0; i < simConfig.getThreshold().length; i++) {
 			param.threshold = simConfig.getThreshold()[i];
-			sb.append("\nThreshold = " + this.simConfig.getThreshold()[i] + "\n");	//add threshold info
-			simulate(param);
-			System.out.println(sb.toString());
-			sb = new StringBuilder();
+			Parameters cell = param.copy();
+			Runnable writer = simulate(cell);
+			writers.add(() -> {
+				sb.append("\nThreshold = " + cell.threshold + "\n");	//add threshold info
+				writer.run();
+				System.out.println(sb.toString());
+				sb = new StringBuilder();
+			});
+		}
+	}
+
+	/**
+	 * Checks if a trained environment can be forked to evaluate every threshold.
+	 * Learning does not depend on the threshold unless the agents learn from trust values,
+	 * whose stats are collected with the threshold of the training.
+	 * @return true if the thresholds can share the training
+	 */
+	protected boolean isForkable() {
+		return this.cLoader != null && !context.isTrustBasedLearningActive();
+	}
+
+	/**
+	 * Trains each simulation once and evaluates every threshold on a fork of the trained environment.
+	 * If the threshold sweep is enabled, every threshold is scored by a single test phase instead.
+	 * Simulations run in parallel, each with its own copy of the content loader.
+	 * Results are written in the same order as {@link #simulate(Parameters)} writes them for each threshold.
+	 * @param param parameters of the cell, which are not changed until its results are written
+	 * @return writer of the results, which waits for the simulations
+	 */
+	private Runnable simulateThresholds(Parameters param) {
+		double[] thresholds = simConfig.getThreshold();
+		SplittableRandom[] randoms = newRandoms();
+		String[] logs = new String[simConfig.getNumOfSims()];
+		List<Future<SimulationStats>> results = runner.submit(simConfig.getNumOfSims(), i -> {
+			Parameters simParam = param.copy();
+			simParam.threshold = thresholds[0];
+			BulkContentLoader loader = cLoader.copy();
+			long testSeed = randoms[i].nextLong();
+			ExternalEnvironment trained = trainExternal(simParam, i, loader, randoms[i]);
+			SimulationStats simStats = new SimulationStats(thresholds.length);
+			testThresholds(trained, simParam, simStats, false, loader, testSeed);
+			logs[i] = loader.takeLog();
+			return simStats;
+		});
+		return () -> {
+			SimulationStats stats = joinStats(results, logs, thresholds.length);
+			writeThresholds(param, stats);
+		};
+	}
+
+	/**
+	 * Splits a random stream for each simulation of a cell.
+	 * Cells are submitted in the order of the grid, so a simulation gets the same stream 
+	 * for the same seed however many workers run the simulations.
+	 * With common random numbers, the simulation with the same index gets the same stream in every cell,
+	 * i.e. the same content order, owners and untrusted agents.
+	 * @return random streams in the order of the simulations
+	 */
+	protected SplittableRandom[] newRandoms() {
+		SplittableRandom[] randoms = new SplittableRandom[simConfig.getNumOfSims()];
+		for (int i = 0; i < randoms.length; i++) {
+			randoms[i] = commonSeeds != null ? new SplittableRandom(commonSeeds[i]) : seeds.split();
+		}
+		return randoms;
+	}
+
+	/**
+	 * Waits for the simulations of a cell and adds up their results in the order of the simulations
+	 * @param results results of the simulations
+	 * @param logs output of the simulations, see {@link #joinSimulations(List, String[])}
+	 * @param nThresholds number of thresholds of the results
+	 * @return results of the cell
+	 */
+	protected SimulationStats joinStats(List<Future<SimulationStats>> results, String[] logs, int nThresholds) {
+		SimulationStats stats = new SimulationStats(nThresholds);
+		for(SimulationStats simStats : joinSimulations(results, logs)) {
+			stats.addStats(simStats);
 		}
+		return stats;
 	}
 
-	protected void simulate(Parameters param) {
-		ExperimentStats internalStats = new ExperimentStats(RelationType.values(), SharingDecision.values().length);
-		ExperimentStats externalStats = new ExperimentStats(RelationType.values(), SharingDecision.values().length);
+	/**
+	 * Waits for the simulations of a cell in their order and prints the index of each finished one
+	 * after the header of the cell, then the output of each simulation.
+	 * Simulations do not print while they run, they leave their output in the logs instead.
+	 * Writers run in the order of the grid, so the progress and the output of a cell are printed 
+	 * together with its results in the same order however many workers run the simulations.
+	 * @param results results of the simulations
+	 * @param logs output of the simulations in the same order, 
+	 * the simulation with index i writes logs[i] before it returns
+	 * @return results of the simulations in the same order
+	 */
+	protected <T> List<T> joinSimulations(List<Future<T>> results, String[] logs) {
 		System.out.print("##Simulation:");
-		for (int i = 0; i < simConfig.getNumOfSims() ; i++) {
-			System.out.print(" " + (i + 1));
-			ExternalEnvironment env = runExternal(param);
-			internalStats.addStats(env.getRelationStats());
-			externalStats.addStats(env.getExternalStats());
+		List<T> joined = new ArrayList<>(results.size());
+		for(Future<T> result : results) {
+			joined.add(SimulationRunner.join(result));
+			System.out.print(" " + joined.size());
 		}
 		System.out.println();
-		writeLineToCSV(param, internalStats, externalStats);
+		for (int i = 0; i < logs.length; i++) {
+			//the log is written before the result, so it is visible once the result is joined
+			if(logs[i] != null && !logs[i].isEmpty()) {
+				System.out.print("#Simulation " + (i + 1) + "\n" + logs[i]);
+			}
+		}
+		return joined;
 	}
-	
-	private ExternalEnvironment runExternal(Parameters param) {
-		if(this.cLoader != null) {
-			return runExternalFromLoader(param);
+
+	/**
+	 * Runs the test phase of a trained environment for every threshold and adds the results to their stats
+	 * @param trained trained environment
+	 * @param param parameters of the simulation
+	 * @param stats results of each threshold
+	 * @param keepTrained true if the trained environment will be trained further, 
+	 * so every test phase runs on a fork of it
+	 * @param loader content loader of the simulation
+	 * @param testSeed seed of the test phases, which is drawn before the training 
+	 * so the test phases do not draw from the stream of the training
+	 */
+	private void testThresholds(ExternalEnvironment trained, Parameters param, SimulationStats stats, 
+			boolean keepTrained, BulkContentLoader loader, long testSeed) {
+		double[] thresholds = simConfig.getThreshold();
+		if(simConfig.isThresholdSweep()) {
+			ExternalEnvironment env = testEnvironment(trained, keepTrained, new SplittableRandom(testSeed));
+			ThresholdSweep sweep = new ThresholdSweep(thresholds, env.getRelationTypes(), 
+					SharingDecision.values().length);
+			env.setMarginRecorder(sweep);
+			loader.loadTestData(env, param);
+			for (int t = 0; t < thresholds.length; t++) {
+				stats.getInternalStats(t).addStats(sweep.getInternalStats(t));
+				stats.getExternalStats(t).addStats(sweep.getExternalStats(t));
+			}
+			return;
+		}
+		//with common random numbers every threshold is tested with the same draws,
+		//otherwise each threshold gets the next stream split from the test stream of the simulation
+		SplittableRandom testRandom = new SplittableRandom(testSeed);
+		for (int t = 0; t < thresholds.length; t++) {
+			param.threshold = thresholds[t];
+			//the last threshold does not need to keep the trained state
+			ExternalEnvironment env = testEnvironment(trained, keepTrained || t < thresholds.length - 1, 
+					commonSeeds != null ? new SplittableRandom(testSeed) : testRandom.split());
+			env.getContext().setInternalThreshold(param.threshold);
+			loader.loadTestData(env, param);
+			stats.getInternalStats(t).addStats(env.getRelationStats());
+			stats.getExternalStats(t).addStats(env.getExternalStats());
 		}
-		return runExternalByParsing(param);
 	}
 
-	private ExternalEnvironment runExternalByParsing(Parameters param) {
-		Utils.deactivatePrediction();
-		Utils.setInternalThreshold(param.threshold);
+	/**
+	 * Returns the environment of a test phase, which draws from the given stream
+	 * @param trained trained environment
+	 * @param fork true if the trained environment will be tested again, so the test phase runs on a fork of it
+	 * @param random random stream of the test phase
+	 * @return fork of the trained environment or the trained environment itself
+	 */
+	private ExternalEnvironment testEnvironment(ExternalEnvironment trained, boolean fork, SplittableRandom random) {
+		if(fork) {
+			return trained.fork(random);
+		}
+		trained.getContext().setRandom(random);
+		return trained;
+	}
 
-		RelationType[] rTypes = RelationType.values();
-		ExternalEnvironment env = new ExternalEnvironment(Arrays.asList(rTypes));
+	/**
+	 * Writes the results of every threshold in the order of the thresholds
+	 * @param param parameters of the simulation
+	 * @param stats results of each threshold
+	 */
+	private void writeThresholds(Parameters param, SimulationStats stats) {
+		double[] thresholds = simConfig.getThreshold();
+		for (int t = 0; t < thresholds.length; t++) {
+			param.threshold = thresholds[t];
+			sb.append("\nThreshold = " + thresholds[t] + "\n");	//add threshold info
+			writeLineToCSV(param, stats.getInternalStats(t), stats.getExternalStats(t));
+			System.out.println(sb.toString());
+			sb = new StringBuilder();
+		}
+	}
 
-		//load snap social network
-		SnapDataLoader snap = new SnapDataLoader();
-		snap.loadData(env, simConfig.getFeatures(), simConfig.getEdges());
+	/**
+	 * Searches the internal threshold instead of evaluating the given thresholds.
+	 * Predictions of all the simulations are collected into a {@link ThresholdCurve}, 
+	 * then the configured thresholds and the best threshold are written to the CSV file and the best one is reported.
+	 * @param param parameters of the cell, which are not changed until its results are written
+	 * @return writer of the results, which waits for the simulations
+	 */
+	private Runnable searchThreshold(Parameters param) {
+		param.threshold = 0;
+		SplittableRandom[] randoms = newRandoms();
+		String[] logs = new String[simConfig.getNumOfSims()];
+		List<Future<ThresholdCurve>> curves = runner.submit(simConfig.getNumOfSims(), i -> {
+			Parameters simParam = param.copy();
+			BulkContentLoader loader = cLoader.copy();
+			ExternalEnvironment env = trainExternal(simParam, i, loader, randoms[i]);
+			ThresholdCurve simCurve = new ThresholdCurve(SharingDecision.values().length);
+			env.setMarginRecorder(simCurve);
+			loader.loadTestData(env, simParam);
+			logs[i] = loader.takeLog();
+			return simCurve;
+		});
+		return () -> {
+			ThresholdCurve curve = new ThresholdCurve(SharingDecision.values().length);
+			for(ThresholdCurve simCurve : joinSimulations(curves, logs)) {
+				curve.addCurve(simCurve);
+			}
+			ExperimentStats stats = new ExperimentStats(RelationType.values(), SharingDecision.values().length);
+			stats.addCurve(curve);
+			sb.append("\nBest Thresholds\n" + stats.getCurveTable() + "\n");
+			writeCurveToCSV(param, stats);
+			System.out.println(sb.toString());
+			sb = new StringBuilder();
+		};
+	}
+
+	/**
+	 * Writes a line for each configured threshold and for the best threshold of the threshold curves
+	 * @param param parameters of the simulation
+	 * @param stats results of the threshold search
+	 */
+	private void writeCurveToCSV(Parameters param, ExperimentStats stats) {
+		for(RelationType rType : RelationType.values()) {
+			List<ThresholdCurve.Point> points = stats.getCurve(rType);
+			if(points.isEmpty()) {
+				continue;
+			}
+			TreeSet<Double> thresholds = new TreeSet<>();
+			if(simConfig.getThreshold() != null) {
+				for(double threshold : simConfig.getThreshold()) {
+					thresholds.add(threshold);
+				}
+			}
+			thresholds.add(ThresholdCurve.getBest(points).getThreshold());
+			for(double threshold : thresholds) {
+				ThresholdCurve.Point point = ThresholdCurve.getPoint(points, threshold);
+				param.threshold = threshold;
+				List<String> row = new ArrayList<>(param.getAsList());
+				row.add(Integer.toString(simConfig.getNumOfSims()));
+				row.add(rType.name());
+				row.addAll(point.getStats().getMetricsAsRow());
+				row.add(Utils.formatDouble(point.getInternalRatio()));
+				this.fo.getCsvWriter().writeNext(row.toArray(new String[row.size()]));
+			}
+		}
+	}
+
+	/**
+	 * Submits the simulations of a cell
+	 * @param param parameters of the cell, which are not changed until its results are written
+	 * @return writer of the results, which waits for the simulations
+	 */
+	protected Runnable simulate(Parameters param) {
+		SplittableRandom[] randoms = newRandoms();
+		String[] logs = new String[simConfig.getNumOfSims()];
+		List<Future<SimulationStats>> results = runner.submit(simConfig.getNumOfSims(), i -> {
+			StringBuilder log = new StringBuilder();
+			ExternalEnvironment env = runExternal(param.copy(), i, randoms[i], log);
+			logs[i] = log.toString();
+			SimulationStats simStats = new SimulationStats(1);
+			simStats.getInternalStats(0).addStats(env.getRelationStats());
+			simStats.getExternalStats(0).addStats(env.getExternalStats());
+			return simStats;
+		});
+		return () -> {
+			SimulationStats stats = joinStats(results, logs, 1);
+			writeLineToCSV(param, stats.getInternalStats(0), stats.getExternalStats(0));
+		};
+	}
+	
+	/**
+	 * Runs a simulation with the bulk loader if there is one, otherwise by parsing the data sets
+	 * @param param parameters of the simulation
+	 * @param sim index of the simulation
+	 * @param random random stream of the simulation
+	 * @param log output of the simulation, which is printed once the cell is joined
+	 * @return environment after the test phase
+	 */
+	private ExternalEnvironment runExternal(Parameters param, int sim, SplittableRandom random, StringBuilder log) {
+		if(this.cLoader != null) {
+			BulkContentLoader loader = cLoader.copy();
+			ExternalEnvironment env = runExternalFromLoader(param, sim, loader, random);
+			log.append(loader.takeLog());
+			return env;
+		}
+		return runExternalByParsing(param, random, log);
+	}
+
+	private ExternalEnvironment runExternalByParsing(Parameters param, SplittableRandom random, StringBuilder log) {
+		ExternalEnvironment env = createEnvironment(param.threshold, random);
 		//create csv file organizer
 		CsvOperator csv = new CsvOperator(simConfig.getTrainingFile());
 		
 		//load training data from picAlert image data set
 		IterativeContentLoader cLoader = new IterativeContentLoader(csv, env);	
 		cLoader.loadData(param.training, param.nTags);
-		cLoader.printTagInfo();
+		cLoader.logTagInfo();
 		cLoader.resetCounts();
 
 		//make new contents predictable
-		Utils.activatePrediction();
+		env.getContext().activatePrediction();
 		csv = new CsvOperator(simConfig.getTestFile());
 		cLoader.setCSV(csv);
 		
 		//load data from picAlert image data set for predictions
 		cLoader.loadData(param.test, param.nTags);
-		cLoader.printTagInfo();
+		cLoader.logTagInfo();
 
-		System.out.println(env.printConfusion());
+		log.append(cLoader.takeLog() + env.printConfusion() + "\n");
 		//write(env);
 		return env;
 	}
 
-	private ExternalEnvironment runExternalFromLoader(Parameters param) {
+	private ExternalEnvironment runExternalFromLoader(Parameters param, int sim, BulkContentLoader loader, 
+			SplittableRandom random) {
+		ExternalEnvironment env = trainExternal(param, sim, loader, random);
+		loader.loadTestData(env, param);
+		return env;
+	}
 
-		Utils.deactivatePrediction();
-		Utils.setInternalThreshold(param.threshold);
-		
-		RelationType[] rTypes = RelationType.values();
-		ExternalEnvironment env = new ExternalEnvironment(Arrays.asList(rTypes));
-		//load snap social network
-		SnapDataLoader snap = new SnapDataLoader();
-		snap.loadData(env, simConfig.getFeatures(), simConfig.getEdges());		
+	/**
+	 * Trains a new environment with the training contents of the simulation
+	 * @param param parameters of the simulation
+	 * @param sim index of the simulation
+	 * @param loader content loader of the simulation
+	 * @param random random stream of the simulation
+	 * @return trained environment
+	 */
+	private ExternalEnvironment trainExternal(Parameters param, int sim, BulkContentLoader loader, 
+			SplittableRandom random) {
+		ExternalEnvironment env = createEnvironment(param.threshold, random);
 		//load contents
-		cLoader.loadData(env, param);
+		if(simConfig.getSnapshotDir() != null) {
+			env = trainFromSnapshot(env, param, sim, loader);
+		}
+		else {
+			loader.loadTrainingData(env, param);
+		}
 		return env;
 	}
 
+	/**
+	 * Creates an environment with the snap social network.
+	 * The network is loaded by the first call, later environments are populated from its template.
+	 * The environment has its own copy of the context, which starts in the training phase.
+	 * @param threshold internal threshold of the simulation
+	 * @param random random stream of the simulation
+	 * @return environment without any content
+	 */
+	protected ExternalEnvironment createEnvironment(double threshold, SplittableRandom random) {
+		SimulationContext simContext = context.copy(random);
+		simContext.setInternalThreshold(threshold);
+		return getTemplate().newExternalEnvironment(simContext);
+	}
+
+	/**
+	 * Returns the template of the snap social network, the network is loaded by the first call.
+	 * Parallel simulations wait for the first one to load it.
+	 * @return template of the environments
+	 */
+	private synchronized EnvironmentTemplate getTemplate() {
+		if(template == null) {
+			//load snap social network
+			SnapDataLoader snap = new SnapDataLoader();
+			template = snap.loadTemplate(simConfig.getFeatures(), simConfig.getEdges());
+		}
+		return template;
+	}
+
+	/**
+	 * Restores the trained state of the simulation from its snapshot if there is one.
+	 * Otherwise trains the environment and saves its snapshot for the later runs.
+	 * @param env environment to be trained
+	 * @param param parameters of the simulation
+	 * @param sim index of the simulation
+	 * @param loader content loader of the simulation
+	 * @return trained environment
+	 */
+	private ExternalEnvironment trainFromSnapshot(ExternalEnvironment env, Parameters param, int sim, 
+			BulkContentLoader loader) {
+		File snapshot = getSnapshotFile(param, sim);
+		//cells with the same training draw share the snapshot, the first one saves it and the others load it
+		synchronized (snapshotLocks.computeIfAbsent(snapshot.getPath(), path -> new Object())) {
+			return restoreOrTrain(env, param, loader, snapshot);
+		}
+	}
+
+	/**
+	 * Restores the environment from the snapshot file, or trains it and saves the file if it does not exist
+	 */
+	private ExternalEnvironment restoreOrTrain(ExternalEnvironment env, Parameters param, 
+			BulkContentLoader loader, File snapshot) {
+		if(snapshot.exists()) {
+			try {
+				List<Long> contentIds = TrainingSnapshot.load(snapshot, env);
+				loader.restoreContentOrder(param, contentIds);
+				return env;
+			} catch (IOException | IllegalArgumentException e) {
+				System.err.println("Snapshot " + snapshot + " could not be loaded, training again: " + e.getMessage());
+				//the agents may be partially restored, so start from a fresh environment
+				env = createEnvironment(param.threshold, env.getContext().getRandom());
+			}
+		}
+		loader.loadTrainingData(env, param);
+		try {
+			TrainingSnapshot.save(snapshot, env, loader.getContents());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return env;
+	}
+
+	/**
+	 * Returns the snapshot file of the training draw, which is identified by 
+	 * the training size, the number of tags, the simulation index and {@link #snapshotKey}.
+	 * Trust stats depend on the threshold, so it is a part of the name when trust based learning is active.
+	 * Decaying tables are saved with their half-life and sketches with their dimensions.
+	 */
+	private File getSnapshotFile(Parameters param, int sim) {
+		File dir = new File(simConfig.getSnapshotDir());
+		dir.mkdirs();
+		String name = "train_" + param.training + "_tags_" + param.nTags;
+		if(context.isTrustBasedLearningActive()) {
+			name += "_threshold_" + param.threshold;
+		}
+		if(context.getTagHalfLife() > 0) {
+			name += "_halflife_" + context.getTagHalfLife();
+		}
+		if(context.isSketchEnabled()) {
+			name += "_sketch_" + context.getSketchWidth() + "x" + context.getSketchDepth();
+		}
+		return new File(dir, name + "_" + snapshotKey + "_sim_" + sim + ".snap");
+	}
+
+	/**
+	 * Returns the part of the snapshot names that identifies the training draws of the experiment,
+	 * which are the seed and the data set. Files are identified by their paths, sizes and modification times,
+	 * so a snapshot is not restored for another data set or after the data set has changed.
+	 * @param seed seed of the experiment
+	 * @return seed and hash of the data set
+	 */
+	private String getSnapshotKey(long seed) {
+		StringBuilder sb = new StringBuilder();
+		String[] paths = {simConfig.getTagFile(), simConfig.getTrainingFile(), 
+				simConfig.getFeatures(), simConfig.getEdges()};
+		for(String path : paths) {
+			if(path != null) {
+				File file = new File(path).getAbsoluteFile();
+				sb.append(file.getPath() + ":" + file.length() + ":" + file.lastModified() + ";");
+			}
+		}
+		String key = "seed_" + seed + (commonSeeds != null ? "_crn" : "");
+		return key + "_data_" + String.format("%08x", sb.toString().hashCode());
+	}
+
 	public void singleAgentEvaluation(){
 
-		Utils.deactivatePrediction();
 		Environment env = null;
 		StringBuilder sb = new StringBuilder();
 		ExperimentStats expStats = new ExperimentStats(RelationType.values(), SharingDecision.values().length);
@@ -165,8 +810,9 @@ public class Evaluator {
 
 				env = runSingleAgentConfusionSimulation(simConfig.getThreshold()[j]);
 				expStats.addStats(env.getRelationStats());
-				agentStats.addStats(env.getAgentStats(simConfig.getNewcomer()));
-				System.out.println(env.getAgentStats(simConfig.getNewcomer()));
+				int newcomer = env.getAgentIdOf(simConfig.getNewcomer());
+				agentStats.addStats(env.getAgentStats(newcomer));
+				System.out.println(env.getAgentStats(newcomer));
 			}
 		}
 		sb.append("Overall System, " + expStats.toString() + "\n");
@@ -177,29 +823,23 @@ public class Evaluator {
 
 	private Environment runSingleAgentConfusionSimulation(double threshold){
 
-		Utils.deactivatePrediction();
-		Utils.setInternalThreshold(threshold);
-		
-		RelationType[] rTypes = RelationType.values();
-		Environment env = new ExternalEnvironment(Arrays.asList(rTypes));
-		//load snap social network
-		SnapDataLoader snap = new SnapDataLoader();
-		snap.loadData(env, simConfig.getFeatures(), simConfig.getEdges());
+		Environment env = createEnvironment(threshold, seeds.split());
 
 		//create csv file organizer
 		CsvOperator csv = new CsvOperator(simConfig.getTrainingFile());
 		//load training data from picAlert image data set
 		IterativeContentLoader cLoader = new IterativeContentLoader(csv, env);
-		cLoader.sequentiallyJoinedAgentsDataLoader(simConfig.getTrainingSize(), 0, simConfig.getNewcomer());
+		int newcomer = env.getAgentIdOf(simConfig.getNewcomer());
+		cLoader.sequentiallyJoinedAgentsDataLoader(simConfig.getTrainingSize(), 0, newcomer);
 		cLoader.printTagInfo();
 		cLoader.resetCounts();
 		//make new contents predictable
-		Utils.activatePrediction();
+		env.getContext().activatePrediction();
 		csv = new CsvOperator(simConfig.getTestFile());
 		cLoader.setCSV(csv);
 		//load data from picAlert image data set for predictions
 		cLoader.sequentiallyJoinedAgentsDataLoader(simConfig.getTestSize(), 
-				simConfig.getNewcomerTurn(), simConfig.getNewcomer());
+				simConfig.getNewcomerTurn(), newcomer);
 		cLoader.printTagInfo();
 
 		System.out.println(env.printConfusion());
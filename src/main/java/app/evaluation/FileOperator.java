@@ -31,7 +31,7 @@ public class FileOperator {
 			PrintWriter writer = new PrintWriter("environment.txt", "UTF-8");
 			writer.println(env.toString());
 			for(Content c : contentList){
-				writer.println("Content id:" + c.getId() + " Owner id:" + c.getOwnerId() + " Tags: " + c.getTags());
+				writer.println("Content id:" + c.getId() + " Owner id:" + env.getAgent(c.getOwnerId()).getExternalId() + " Tags: " + c.getTags(env.getContext().getTagDictionary()));
 			}
 			writer.println(env.printConfusion());
 			writer.println(env.printTagTables());
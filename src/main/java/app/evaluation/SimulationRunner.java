@@ -0,0 +1,98 @@
+package app.evaluation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+/**
+ * Simulation runner runs the independent simulations of an experiment on a work-stealing pool.
+ * The simulations of all the cells of the parameter grid are submitted to the same pool,
+ * so an idle worker takes the next simulation whichever cell it belongs to
+ * and the cells with more expensive simulations do not keep the others waiting.
+ * A simulation must not share any mutable state with the others,
+ * i.e. it uses its own environment, content loader and parameters.
+ * Results of a cell are returned in the order of its simulations whichever finishes first,
+ * so merging them gives the same results as running the simulations one after another.
+ * @author cankurtan
+ *
+ */
+public class SimulationRunner {
+
+	/**
+	 * Number of simulations that run in parallel
+	 */
+	private final int nWorkers;
+	/**
+	 * Pool of the workers, null if the simulations run on the calling thread
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Runner constructor
+	 * @param nWorkers number of simulations that run in parallel, 0 for the number of available processors
+	 */
+	public SimulationRunner(int nWorkers) {
+		this.nWorkers = nWorkers > 0 ? nWorkers : Runtime.getRuntime().availableProcessors();
+		this.pool = this.nWorkers > 1 ? new ForkJoinPool(this.nWorkers) : null;
+	}
+
+	/**
+	 * Returns the number of simulations that run in parallel
+	 * @return the number of workers
+	 */
+	public int getWorkers() {
+		return nWorkers;
+	}
+
+	/**
+	 * Submits the simulations without waiting for them.
+	 * A single worker runs the simulations on the calling thread before returning.
+	 * @param nSims number of simulations
+	 * @param simulation runs the simulation of the given index and returns its results
+	 * @return results of the simulations in the order of their indices, see {@link #join(Future)}
+	 */
+	public <T> List<Future<T>> submit(int nSims, IntFunction<T> simulation) {
+		List<Future<T>> results = new ArrayList<>(nSims);
+		for (int sim = 0; sim < nSims; sim++) {
+			final int index = sim;
+			if(pool == null) {
+				results.add(CompletableFuture.completedFuture(simulation.apply(index)));
+			}
+			else {
+				results.add(pool.submit(() -> simulation.apply(index)));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Waits for a submitted simulation
+	 * @param result result of the simulation returned by {@link #submit(int, IntFunction)}
+	 * @return result of the simulation
+	 * @throws IllegalStateException if the simulation fails or the waiting thread is interrupted
+	 */
+	public static <T> T join(Future<T> result) {
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Simulations have been interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Simulation has failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Stops the workers once the submitted simulations are finished
+	 */
+	public void shutdown() {
+		if(pool != null) {
+			pool.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,75 @@
+package app.evaluation;
+
+import model.experiment.ExperimentStats;
+import model.network.RelationType;
+import model.privacy.SharingDecision;
+
+/**
+ * Internal and external results of the test phases for each threshold.
+ * Every simulation collects its own results, which are added to the results of the experiment
+ * once the simulation has finished.
+ * @author cankurtan
+ *
+ */
+public class SimulationStats {
+
+	/**
+	 * Internal results of each threshold
+	 */
+	private final ExperimentStats[] internalStats;
+	/**
+	 * External results of each threshold
+	 */
+	private final ExperimentStats[] externalStats;
+
+	/**
+	 * Stats constructor
+	 * @param nThresholds number of thresholds
+	 */
+	public SimulationStats(int nThresholds) {
+		this.internalStats = new ExperimentStats[nThresholds];
+		this.externalStats = new ExperimentStats[nThresholds];
+		for (int t = 0; t < nThresholds; t++) {
+			internalStats[t] = new ExperimentStats(RelationType.values(), SharingDecision.values().length);
+			externalStats[t] = new ExperimentStats(RelationType.values(), SharingDecision.values().length);
+		}
+	}
+
+	/**
+	 * Adds the results of a simulation
+	 * @param other results of the simulation with the same thresholds
+	 */
+	public void addStats(SimulationStats other) {
+		for (int t = 0; t < internalStats.length; t++) {
+			internalStats[t].addStats(other.internalStats[t].getRelationStats());
+			externalStats[t].addStats(other.externalStats[t].getRelationStats());
+		}
+	}
+
+	/**
+	 * Returns the internal results of a threshold
+	 * @param index index of the threshold
+	 * @return internal results
+	 */
+	public ExperimentStats getInternalStats(int index) {
+		return internalStats[index];
+	}
+
+	/**
+	 * Returns the external results of a threshold
+	 * @param index index of the threshold
+	 * @return external results
+	 */
+	public ExperimentStats getExternalStats(int index) {
+		return externalStats[index];
+	}
+
+	/**
+	 * Returns the number of thresholds
+	 * @return the number of thresholds
+	 */
+	public int size() {
+		return internalStats.length;
+	}
+
+}
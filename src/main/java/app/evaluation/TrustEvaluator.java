@@ -1,15 +1,14 @@
 package app.evaluation;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Future;
 
 import app.Configuration;
 import model.experiment.ExperimentStats;
 import model.experiment.Parameters;
 import model.loader.BulkContentLoader;
-import model.loader.SnapDataLoader;
 import model.network.ExternalEnvironment;
 import model.network.RelationType;
 import model.privacy.AgentCharacter;
@@ -23,45 +22,57 @@ public class TrustEvaluator extends Evaluator {
 		super(simConfig, cLoader);
 	}
 	
+	/**
+	 * Untrusted agents are drawn for each run, so the thresholds do not share the training
+	 */
 	@Override
-	protected void simulate(Parameters param) {
+	protected boolean isForkable() {
+		return false;
+	}
+
+	@Override
+	protected Runnable simulate(Parameters param) {
 		int[] numbers = {1, 2, 3, 4, 5, 7, 10, 15, 20, 25, 30};
+		List<List<Future<SimulationStats>>> cells = new ArrayList<>();
+		List<String[]> cellLogs = new ArrayList<>();
 		for(int j = 0; j < numbers.length; j++) {
-			ExperimentStats internalStats = new ExperimentStats(RelationType.values(), SharingDecision.values().length);
-			ExperimentStats externalStats = new ExperimentStats(RelationType.values(), SharingDecision.values().length);
-			System.out.print("##Simulation:");
-			for (int i = 0; i < simConfig.getNumOfSims(); i++) {
-				System.out.print(" " + (i + 1));
-				ExternalEnvironment env = runTrust(param, numbers[j]);
-				internalStats.addStats(env.getRelationStats());
-				externalStats.addStats(env.getExternalStats());
-			}
-			System.out.println();
-			writeLineToCSV(param, internalStats, externalStats);
+			int untrusted = numbers[j];
+			SplittableRandom[] randoms = newRandoms();
+			String[] logs = new String[simConfig.getNumOfSims()];
+			cellLogs.add(logs);
+			cells.add(runner.submit(simConfig.getNumOfSims(), i -> {
+				BulkContentLoader loader = cLoader.copy();
+				ExternalEnvironment env = runTrust(param.copy(), untrusted, loader, randoms[i]);
+				logs[i] = loader.takeLog();
+				SimulationStats simStats = new SimulationStats(1);
+				simStats.getInternalStats(0).addStats(env.getRelationStats());
+				simStats.getExternalStats(0).addStats(env.getExternalStats());
+				return simStats;
+			}));
 		}
+		return () -> {
+			for(int j = 0; j < cells.size(); j++) {
+				SimulationStats stats = joinStats(cells.get(j), cellLogs.get(j), 1);
+				writeLineToCSV(param, stats.getInternalStats(0), stats.getExternalStats(0));
+			}
+		};
 	}
 	
-	protected ExternalEnvironment runTrust(Parameters param, int untrusted) {
+	protected ExternalEnvironment runTrust(Parameters param, int untrusted, BulkContentLoader loader, 
+			SplittableRandom random) {
 
-		Utils.deactivatePrediction();
-		Utils.setInternalThreshold(param.threshold);
-		//Utils.activateTrustBasedLearning();
-		
-		RelationType[] rTypes = RelationType.values();
-		ExternalEnvironment env = new ExternalEnvironment(Arrays.asList(rTypes));
-		//load snap social network
-		SnapDataLoader snap = new SnapDataLoader();
-		snap.loadData(env, simConfig.getFeatures(), simConfig.getEdges());
+		ExternalEnvironment env = createEnvironment(param.threshold, random);
+		//env.getContext().activateTrustBasedLearning();
 		
 		List<Integer> untrustedAgents = new ArrayList<>(env.getAgentIds());
-		Collections.shuffle(untrustedAgents);
+		Utils.shuffle(untrustedAgents, env.getContext().getRandom());
 		untrustedAgents = untrustedAgents.subList(0, untrusted);
 		
 		for(int agentId : untrustedAgents){
 			env.getAgent(agentId).setAgentChar(AgentCharacter.OPPOSITE);
 		}
 		//load contents
-		cLoader.loadData(env, param);
+		loader.loadData(env, param);
 		return env;
 	}
 	
@@ -11,6 +11,10 @@ import utils.Utils;
 public class ExperimentStats {
 	
 	private final Map<RelationType, Stats> relationStats = new HashMap<>();
+	/**
+	 * Threshold curves of the relation types, empty unless a threshold search is done
+	 */
+	private final Map<RelationType, List<ThresholdCurve.Point>> curves = new HashMap<>();
 	private int count = 0;
 	
 	public ExperimentStats(RelationType[] rTypes, int ndecision) {
@@ -26,6 +30,50 @@ public class ExperimentStats {
 		count++;
 	}
 
+	/**
+	 * Adds the curves of a threshold search, 
+	 * the point result of each relation type is the best point of its curve
+	 * @param curve predictions of the threshold search
+	 */
+	public void addCurve(ThresholdCurve curve) {
+		relationStats.forEach((rType, stats) -> {
+			List<ThresholdCurve.Point> points = curve.getPoints(rType);
+			curves.put(rType, points);
+			stats.addConfusion(ThresholdCurve.getBest(points).getStats().getConfusion());
+		});
+		count++;
+	}
+
+	/**
+	 * Returns the threshold curve of a relation type
+	 * @param rType relation type
+	 * @return points of the curve in the increasing order of their thresholds, empty if there is no curve
+	 */
+	public List<ThresholdCurve.Point> getCurve(RelationType rType) {
+		return curves.getOrDefault(rType, new ArrayList<>());
+	}
+
+	/**
+	 * Formats the best point of the curve of each relation type
+	 * @return table of the best thresholds
+	 */
+	public String getCurveTable() {
+		List<List<String>> rows = new ArrayList<>();
+		List<String> headers = getHeaderRow();
+		headers.add(1, "Threshold");
+		headers.add(2, "int/all");
+		rows.add(headers);
+		curves.forEach((rType, points) -> {
+			ThresholdCurve.Point best = ThresholdCurve.getBest(points);
+			List<String> row = new ArrayList<>(best.getStats().getMetricsAsRow());
+			row.add(0, rType.name());
+			row.add(1, Double.toString(best.getThreshold()));
+			row.add(2, Utils.formatDouble(best.getInternalRatio()));
+			rows.add(row);
+		});
+		return Utils.formatAsTable(rows);
+	}
+
 	public int getCount() {
 		return count;
 	}
@@ -2,7 +2,7 @@ package model.experiment;
 
 public enum ExperimentType {
 	
-	INTERNAL(0), EXTERNAL(1), TRUST(2), TAG(3), SINGLE_AGENT(4);
+	INTERNAL(0), EXTERNAL(1), TRUST(2), TAG(3), SINGLE_AGENT(4), THRESHOLD_SEARCH(5);
 	
 	private int id;
 	
@@ -0,0 +1,25 @@
+package model.experiment;
+
+import model.network.RelationType;
+
+/**
+ * Records the predictions of the test phase before a threshold is applied to them,
+ * so that the predictions can be scored for more than one internal threshold.
+ * The margin of a prediction is the distance between the confidence of the content
+ * and the average confidence of the tag table, see {@link model.privacy.TagTable#getMargin(double, double)}.
+ * @author cankurtan
+ *
+ */
+public interface MarginRecorder {
+
+	/**
+	 * Records a prediction
+	 * @param rType relation type of the prediction
+	 * @param decision actual sharing decision
+	 * @param confValue confidence of the content
+	 * @param avgConf average confidence of the tag table
+	 * @param externalEstimation decision of the external estimation
+	 */
+	void record(RelationType rType, int decision, double confValue, double avgConf, int externalEstimation);
+
+}
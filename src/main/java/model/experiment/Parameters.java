@@ -14,6 +14,19 @@ public class Parameters {
 		nTags = 0;
 	}
 	
+	/**
+	 * Returns a copy of the parameters, e.g. for a simulation that changes them while the others run
+	 * @return copy of the parameters
+	 */
+	public Parameters copy() {
+		Parameters copy = new Parameters();
+		copy.training = training;
+		copy.test = test;
+		copy.threshold = threshold;
+		copy.nTags = nTags;
+		return copy;
+	}
+	
 	public List<String> getAsList() {
 		return Arrays.asList(Integer.toString(training), Integer.toString(test), Double.toString(threshold), Integer.toString(nTags));
 	}
@@ -0,0 +1,208 @@
+package model.experiment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import model.network.TagDictionary;
+
+/**
+ * Simulation context holds the mutable state of a single simulation run,
+ * which are the phase of the run, the internal threshold and the settings of the tag tables.
+ * Every environment has its own context, and its agents, tag tables and loaders use the context
+ * of the environment, so simulations in the same JVM do not affect each other
+ * and can run in parallel as long as each run uses its own environment.
+ * A context is not thread-safe, it belongs to one run at a time.
+ * @author cankurtan
+ *
+ */
+public class SimulationContext {
+
+	/**
+	 * Threshold of the internally undecidable state, 0 if external estimation is disabled
+	 */
+	private double internalThreshold = 0;
+	/**
+	 * True in the test phase, where new contents are predicted
+	 */
+	private boolean isPredictionActive = false;
+	/**
+	 * True if the agents keep learning in the test phase
+	 */
+	private boolean isLearningActive = false;
+	/**
+	 * True if the external tag tables are updated according to trust values
+	 */
+	private boolean isTrustBasedLearningActive = false;
+	/**
+	 * Half-life of the tag table values in number of contents, 0 if they do not decay
+	 */
+	private double tagHalfLife = 0;
+	/**
+	 * Width of the count-min sketches of the internal tag tables, 0 if the tables are exact
+	 */
+	private int sketchWidth = 0;
+	/**
+	 * Depth of the count-min sketches of the internal tag tables
+	 */
+	private int sketchDepth = 0;
+	/**
+	 * Number of false predictions of each content, mapped to content id
+	 */
+	private final Map<Long, Integer> falsePredictions = new HashMap<>();
+	/**
+	 * Random stream of the simulation, which draws the contents, their owners and the random decisions
+	 */
+	private SplittableRandom random;
+	/**
+	 * Dictionary of the tags, which is shared by the copies of the context
+	 */
+	private TagDictionary tagDictionary;
+
+	/**
+	 * Context of a training phase without external estimation
+	 */
+	public SimulationContext() {
+		super();
+		this.random = new SplittableRandom();
+		this.tagDictionary = new TagDictionary();
+	}
+
+	/**
+	 * Copy constructor
+	 * @param other context to be copied
+	 * @param random random stream of the copy
+	 */
+	private SimulationContext(SimulationContext other, SplittableRandom random) {
+		this.internalThreshold = other.internalThreshold;
+		this.isPredictionActive = other.isPredictionActive;
+		this.isLearningActive = other.isLearningActive;
+		this.isTrustBasedLearningActive = other.isTrustBasedLearningActive;
+		this.tagHalfLife = other.tagHalfLife;
+		this.sketchWidth = other.sketchWidth;
+		this.sketchDepth = other.sketchDepth;
+		this.falsePredictions.putAll(other.falsePredictions);
+		this.random = random;
+		this.tagDictionary = other.tagDictionary;
+	}
+
+	/**
+	 * Returns an independent copy of the context, e.g. for a new run with the same settings.
+	 * The stream of the copy is given, so copying does not draw from the stream of this context.
+	 * Tag ids are only meaningful with the dictionary they are interned in, so the copy shares the dictionary.
+	 * @param random random stream of the copy
+	 * @return copy of the context
+	 */
+	public SimulationContext copy(SplittableRandom random) {
+		return new SimulationContext(this, random);
+	}
+
+	public boolean isExternalEnabled() {
+		return internalThreshold != 0;
+	}
+
+	public double getInternalThreshold() {
+		return internalThreshold;
+	}
+
+	public void setInternalThreshold(double threshold) {
+		this.internalThreshold = threshold;
+	}
+
+	public boolean isPredictionActive() {
+		return isPredictionActive;
+	}
+
+	public void activatePrediction() {
+		this.isPredictionActive = true;
+	}
+
+	public void deactivatePrediction() {
+		this.isPredictionActive = false;
+	}
+
+	public boolean isLearningActive() {
+		return isLearningActive;
+	}
+
+	public void setLearningActive(boolean active) {
+		this.isLearningActive = active;
+	}
+
+	public boolean isTrustBasedLearningActive() {
+		return isTrustBasedLearningActive;
+	}
+
+	public void activateTrustBasedLearning() {
+		this.isTrustBasedLearningActive = true;
+	}
+
+	public double getTagHalfLife() {
+		return tagHalfLife;
+	}
+
+	public void setTagHalfLife(double halfLife) {
+		this.tagHalfLife = halfLife;
+	}
+
+	public boolean isSketchEnabled() {
+		return sketchWidth > 0;
+	}
+
+	public int getSketchWidth() {
+		return sketchWidth;
+	}
+
+	public int getSketchDepth() {
+		return sketchDepth;
+	}
+
+	public void setSketch(int width, int depth) {
+		this.sketchWidth = width;
+		this.sketchDepth = depth;
+	}
+
+	public SplittableRandom getRandom() {
+		return random;
+	}
+
+	/**
+	 * Sets the random stream of the simulation, e.g. a stream split from the seed of the experiment
+	 * @param random random stream
+	 */
+	public void setRandom(SplittableRandom random) {
+		this.random = random;
+	}
+
+	/**
+	 * Returns the dictionary that the tags of the simulation are interned in
+	 * @return tag dictionary
+	 */
+	public TagDictionary getTagDictionary() {
+		return tagDictionary;
+	}
+
+	/**
+	 * Sets the dictionary of the tags, e.g. the dictionary of the content loader of the experiment
+	 * @param tagDictionary tag dictionary
+	 */
+	public void setTagDictionary(TagDictionary tagDictionary) {
+		this.tagDictionary = tagDictionary;
+	}
+
+	public void addFalsePredicted(Long id) {
+		falsePredictions.merge(id, 1, Integer::sum);
+	}
+
+	public void printFalsePredictions() {
+		List<Long> fpList = new ArrayList<>(falsePredictions.keySet());
+		Collections.sort(fpList, (arg0, arg1) -> falsePredictions.get(arg1).compareTo(falsePredictions.get(arg0)));
+		for (int i = 0; i < fpList.size(); i++) {
+			System.out.println(fpList.get(i) + " " + falsePredictions.get(fpList.get(i)));
+		}
+	}
+
+}
@@ -40,6 +40,16 @@ public class Stats {
 		this.confusion = new int[ndecision][ndecision];
 	}
 	
+	/**
+	 * Returns an independent copy of the statistics
+	 * @return copy of the statistics
+	 */
+	public Stats copy() {
+		Stats copy = new Stats(confusion.length);
+		copy.addConfusion(confusion);
+		return copy;
+	}
+
 	/**
 	 * Updates the confusion matrix
 	 * @param decision sharing decision
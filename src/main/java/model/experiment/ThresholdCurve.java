@@ -0,0 +1,271 @@
+package model.experiment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import model.network.RelationType;
+import model.privacy.TagTable;
+import utils.Utils;
+
+/**
+ * Threshold curve finds the internal threshold without listing candidate thresholds.
+ * It collects the margins of all the test predictions, sorts them once,
+ * and sweeps the thresholds from 0 up to the largest margin.
+ * A prediction is internally undecidable if its margin, as {@link TagTable#getMargin(double, double)} finds it,
+ * is not greater than the threshold, so the only thresholds that change the results are the margins themselves.
+ * Each of them is a point of the curve with the statistics of the internal and the external predictions together.
+ * @author cankurtan
+ *
+ */
+public class ThresholdCurve implements MarginRecorder {
+
+	/**
+	 * Smallest capacity the columns grow to
+	 */
+	private static final int MIN_CAPACITY = 64;
+
+	/**
+	 * Number of possible sharing decisions
+	 */
+	private final int nDecision;
+	/**
+	 * Margins of the predictions for each relation type
+	 */
+	private final double[][] margins;
+	/**
+	 * Actual decisions of the predictions for each relation type
+	 */
+	private final int[][] decisions;
+	/**
+	 * Internal decisions of the predictions, which are taken if the prediction is decidable
+	 */
+	private final int[][] internals;
+	/**
+	 * External decisions of the predictions, which are taken if the prediction is undecidable
+	 */
+	private final int[][] externals;
+	/**
+	 * Number of predictions for each relation type
+	 */
+	private final int[] sizes;
+
+	/**
+	 * Curve constructor
+	 * @param nDecision number of possible sharing decisions
+	 */
+	public ThresholdCurve(int nDecision) {
+		int nRelTypes = RelationType.values().length;
+		this.nDecision = nDecision;
+		this.margins = new double[nRelTypes][0];
+		this.decisions = new int[nRelTypes][0];
+		this.internals = new int[nRelTypes][0];
+		this.externals = new int[nRelTypes][0];
+		this.sizes = new int[nRelTypes];
+	}
+
+	/**
+	 * Records the margin of a prediction and the decisions it leads to
+	 */
+	@Override
+	public void record(RelationType rType, int decision, double confValue, double avgConf, int externalEstimation) {
+		int r = rType.getId();
+		int n = sizes[r];
+		if(n == margins[r].length) {
+			int capacity = Math.max(MIN_CAPACITY, 2 * n);
+			margins[r] = Arrays.copyOf(margins[r], capacity);
+			decisions[r] = Arrays.copyOf(decisions[r], capacity);
+			internals[r] = Arrays.copyOf(internals[r], capacity);
+			externals[r] = Arrays.copyOf(externals[r], capacity);
+		}
+		margins[r][n] = TagTable.getMargin(confValue, avgConf);
+		decisions[r][n] = decision;
+		//decision of the table without a threshold
+		internals[r][n] = TagTable.decide(confValue, avgConf, 0);
+		externals[r][n] = externalEstimation;
+		sizes[r]++;
+	}
+
+	/**
+	 * Adds the predictions of another curve, e.g. the curve of another simulation
+	 * @param other curve with the same number of decisions
+	 */
+	public void addCurve(ThresholdCurve other) {
+		for (int r = 0; r < sizes.length; r++) {
+			int n = sizes[r] + other.sizes[r];
+			if(n > margins[r].length) {
+				margins[r] = Arrays.copyOf(margins[r], n);
+				decisions[r] = Arrays.copyOf(decisions[r], n);
+				internals[r] = Arrays.copyOf(internals[r], n);
+				externals[r] = Arrays.copyOf(externals[r], n);
+			}
+			System.arraycopy(other.margins[r], 0, margins[r], sizes[r], other.sizes[r]);
+			System.arraycopy(other.decisions[r], 0, decisions[r], sizes[r], other.sizes[r]);
+			System.arraycopy(other.internals[r], 0, internals[r], sizes[r], other.sizes[r]);
+			System.arraycopy(other.externals[r], 0, externals[r], sizes[r], other.sizes[r]);
+			sizes[r] = n;
+		}
+	}
+
+	/**
+	 * Returns the number of recorded predictions
+	 * @param rType relation type of the predictions
+	 * @return the number of predictions
+	 */
+	public int size(RelationType rType) {
+		return sizes[rType.getId()];
+	}
+
+	/**
+	 * Calculates the points of the curve in the increasing order of their thresholds.
+	 * The first point is threshold 0, where external estimation is disabled.
+	 * @param rType relation type of the predictions
+	 * @return points of the curve
+	 */
+	public List<Point> getPoints(RelationType rType) {
+		final int r = rType.getId();
+		final int n = sizes[r];
+		final double[] margin = margins[r];
+		//thresholds of the points are the distinct margins, which are all positive
+		double[] thresholds = distinctMargins(margin, n);
+		//predictions are ordered by their margins with a counting sort over the thresholds
+		int[] starts = new int[thresholds.length + 1];
+		int[] positions = new int[n];
+		for (int i = 0; i < n; i++) {
+			positions[i] = Arrays.binarySearch(thresholds, margin[i]);
+			starts[positions[i] + 1]++;
+		}
+		for (int t = 0; t < thresholds.length; t++) {
+			starts[t + 1] += starts[t];
+		}
+		int[] next = Arrays.copyOf(starts, thresholds.length);
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++) {
+			order[next[positions[i]]++] = i;
+		}
+
+		//every prediction is internal at threshold 0
+		int[][] confusion = new int[nDecision][nDecision];
+		for (int i = 0; i < n; i++) {
+			confusion[decisions[r][i]][internals[r][i]]++;
+		}
+		List<Point> points = new ArrayList<>();
+		points.add(new Point(0, confusion, n, n));
+		int nInternal = n;
+		for (int t = 0; t < thresholds.length; t++) {
+			//predictions with the same margin become undecidable together
+			for (int k = starts[t]; k < starts[t + 1]; k++) {
+				int i = order[k];
+				confusion[decisions[r][i]][internals[r][i]]--;
+				//an externally undecidable prediction is not counted, as in ThresholdSweep
+				if(externals[r][i] != Utils.EXTERNALLY_UNDECIDABLE_STATE) {
+					confusion[decisions[r][i]][externals[r][i]]++;
+				}
+				nInternal--;
+			}
+			points.add(new Point(thresholds[t], confusion, nInternal, n));
+		}
+		return points;
+	}
+
+	/**
+	 * Sorts the margins and removes the duplicates
+	 * @param margin margins of the predictions
+	 * @param n number of the predictions
+	 * @return distinct margins in increasing order
+	 */
+	private static double[] distinctMargins(double[] margin, int n) {
+		double[] sorted = Arrays.copyOf(margin, n);
+		Arrays.sort(sorted);
+		int nDistinct = 0;
+		for (int i = 0; i < n; i++) {
+			if(nDistinct == 0 || Double.compare(sorted[i], sorted[nDistinct - 1]) != 0) {
+				sorted[nDistinct++] = sorted[i];
+			}
+		}
+		return Arrays.copyOf(sorted, nDistinct);
+	}
+
+	/**
+	 * Finds the point with the highest accuracy, the smallest threshold among the equally accurate points
+	 * @param rType relation type of the predictions
+	 * @return best point of the curve
+	 */
+	public Point getBest(RelationType rType) {
+		return getBest(getPoints(rType));
+	}
+
+	/**
+	 * Finds the point with the highest accuracy, the smallest threshold among the equally accurate points
+	 * @param points points of a curve in the increasing order of their thresholds
+	 * @return best point of the curve
+	 */
+	public static Point getBest(List<Point> points) {
+		Point best = points.get(0);
+		for(Point point : points) {
+			if(point.getStats().getAccuracy() > best.getStats().getAccuracy()) {
+				best = point;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Finds the point that holds for a threshold, which is the point of the largest margin that is not greater than it
+	 * @param points points of a curve in the increasing order of their thresholds
+	 * @param threshold internal threshold
+	 * @return point of the threshold
+	 */
+	public static Point getPoint(List<Point> points, double threshold) {
+		Point point = points.get(0);
+		for(Point next : points) {
+			if(next.getThreshold() > threshold) {
+				break;
+			}
+			point = next;
+		}
+		return point;
+	}
+
+	/**
+	 * Point of a threshold curve
+	 */
+	public static class Point {
+
+		private final double threshold;
+		private final Stats stats;
+		private final double internalRatio;
+
+		private Point(double threshold, int[][] confusion, int nInternal, int n) {
+			this.threshold = threshold;
+			this.stats = new Stats(confusion.length);
+			this.stats.addConfusion(confusion);
+			this.internalRatio = n > 0 ? 1.0 * nInternal / n : 0;
+		}
+
+		/**
+		 * Returns the internal threshold of the point
+		 * @return threshold
+		 */
+		public double getThreshold() {
+			return threshold;
+		}
+
+		/**
+		 * Returns the statistics of the internal and the external predictions together
+		 * @return statistics of all the predictions
+		 */
+		public Stats getStats() {
+			return stats;
+		}
+
+		/**
+		 * Returns the ratio of the internally decidable predictions
+		 * @return ratio of the internal predictions to all the predictions
+		 */
+		public double getInternalRatio() {
+			return internalRatio;
+		}
+	}
+
+}
@@ -0,0 +1,102 @@
+package model.experiment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.network.RelationType;
+import model.privacy.TagTable;
+import utils.Utils;
+
+/**
+ * Threshold sweep scores every internal threshold from a single test pass.
+ * The threshold only decides whether an internal estimation is undecidable,
+ * so it is enough to record the confidence of each estimation against the average confidence
+ * and the external decision that would be taken instead.
+ * Estimations are added to the internal or the external statistics of each threshold
+ * as if the test phase was run once per threshold.
+ * @author cankurtan
+ *
+ */
+public class ThresholdSweep implements MarginRecorder {
+
+	/**
+	 * Internal thresholds that are scored
+	 */
+	private final double[] thresholds;
+	/**
+	 * Statistics of the internal estimations for each threshold, mapped to relation types
+	 */
+	private final List<Map<RelationType, Stats>> internalStats;
+	/**
+	 * Statistics of the external estimations for each threshold, mapped to relation types
+	 */
+	private final List<Map<RelationType, Stats>> externalStats;
+
+	/**
+	 * Sweep constructor
+	 * @param thresholds internal thresholds that are scored
+	 * @param relationTypes relation types of the environment
+	 * @param nDecision number of possible sharing decisions
+	 */
+	public ThresholdSweep(double[] thresholds, List<RelationType> relationTypes, int nDecision) {
+		this.thresholds = Arrays.copyOf(thresholds, thresholds.length);
+		this.internalStats = new ArrayList<>(thresholds.length);
+		this.externalStats = new ArrayList<>(thresholds.length);
+		for (int t = 0; t < thresholds.length; t++) {
+			Map<RelationType, Stats> iStats = new HashMap<>();
+			Map<RelationType, Stats> eStats = new HashMap<>();
+			for(RelationType rType : relationTypes) {
+				iStats.put(rType, new Stats(nDecision));
+				eStats.put(rType, new Stats(nDecision));
+			}
+			internalStats.add(iStats);
+			externalStats.add(eStats);
+		}
+	}
+
+	/**
+	 * Records an estimation for every threshold
+	 */
+	@Override
+	public void record(RelationType rType, int decision, double confValue, double avgConf, int externalEstimation) {
+		for (int t = 0; t < thresholds.length; t++) {
+			int estimation = TagTable.decide(confValue, avgConf, thresholds[t]);
+			if(estimation != Utils.INTERNALLY_UNDECIDABLE_STATE) {
+				internalStats.get(t).get(rType).update(decision, estimation);
+			}
+			else if(externalEstimation != Utils.EXTERNALLY_UNDECIDABLE_STATE) {
+				externalStats.get(t).get(rType).update(decision, externalEstimation);
+			}
+		}
+	}
+
+	/**
+	 * Returns the thresholds that are scored
+	 * @return internal thresholds
+	 */
+	public double[] getThresholds() {
+		return Arrays.copyOf(thresholds, thresholds.length);
+	}
+
+	/**
+	 * Returns the statistics of the internal estimations for a threshold
+	 * @param index index of the threshold
+	 * @return statistics mapped to relation types
+	 */
+	public Map<RelationType, Stats> getInternalStats(int index) {
+		return internalStats.get(index);
+	}
+
+	/**
+	 * Returns the statistics of the external estimations for a threshold
+	 * @param index index of the threshold
+	 * @return statistics mapped to relation types
+	 */
+	public Map<RelationType, Stats> getExternalStats(int index) {
+		return externalStats.get(index);
+	}
+
+}
@@ -1,7 +1,7 @@
 package model.loader;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -14,42 +14,199 @@ import app.CsvOperator;
 import model.experiment.Parameters;
 import model.network.Content;
 import model.network.Environment;
+import model.network.ExternalEnvironment;
 import model.network.RelationType;
+import model.network.TagDictionary;
 import model.privacy.PrivacySetting;
 import model.privacy.SharingDecision;
 import utils.Utils;
 
 public class BulkContentLoader extends ContentLoader {
 
-	private Map<Long, List<String>> tagMap = new HashMap<>();
+	private Map<Long, int[]> tagMap = new HashMap<>();
+	/**
+	 * Dictionary that the tags of the loaded contents are interned in
+	 */
+	private final TagDictionary dictionary;
 	private Map<Long, PrivacySetting> settings = new HashMap<>();
 	private List<Content> contents = new ArrayList<>();
 	private static final Logger LOGGER = Logger.getLogger(App.class.getName());
-	private Set<String> priTags = new HashSet<>();
-	private Set<String> pubTags = new HashSet<>();
+	private Set<Integer> priTags = new HashSet<>();
+	private Set<Integer> pubTags = new HashSet<>();
+	/**
+	 * Agents in the order of the current round of the training, 
+	 * which is kept between the stages of the training
+	 */
+	private List<Integer> owners = new ArrayList<>();
+	/**
+	 * Position in the round of the agent that gets the next training content
+	 */
+	private int nextOwner;
 
 	public BulkContentLoader(Environment env, String tagFile, String psFile) {
 		super(env);
+		this.dictionary = new TagDictionary();
 		loadTags(tagFile);
 		loadPrivacySettings(psFile);
 	}
 
+	/**
+	 * Copy constructor, the copy shares the loaded tags, their dictionary and privacy settings 
+	 * but draws and distributes its contents on its own
+	 * @param other loader to be copied
+	 */
+	private BulkContentLoader(BulkContentLoader other) {
+		super(other.env);
+		this.dictionary = other.dictionary;
+		this.tagMap = other.tagMap;
+		this.settings = other.settings;
+	}
+
+	/**
+	 * Returns a loader for another simulation, which may run in parallel with the simulation of this loader
+	 * @return loader with the same tags and privacy settings
+	 */
+	public BulkContentLoader copy() {
+		return new BulkContentLoader(this);
+	}
+
+	/**
+	 * Returns the dictionary that the tags of the contents are interned in,
+	 * which should be the dictionary of the contexts of the environments that the contents are given to
+	 * @return tag dictionary of the loader
+	 */
+	public TagDictionary getTagDictionary() {
+		return dictionary;
+	}
+
 	public void loadData(Environment env, Parameters param) {
+		loadTrainingData(env, param);
+		loadTestData(env, param);
+	}
+
+	/**
+	 * Draws the order of the contents and distributes the training contents
+	 * @param env environment that will be trained
+	 * @param param parameters of the simulation
+	 */
+	public void loadTrainingData(Environment env, Parameters param) {
+		drawTrainingData(env, param);
+		continueTrainingData(env, param, 0);
+		env.trimTagTables();
+	}
+
+	/**
+	 * Draws the order of the contents for a training in stages,
+	 * which are distributed by {@link #continueTrainingData(Environment, Parameters, int)}
+	 * @param env environment that will be trained
+	 * @param param parameters of the simulation
+	 */
+	public void drawTrainingData(Environment env, Parameters param) {
 		super.env = env;
 		this.contents = prepareContents(param);
-		Collections.shuffle(contents);
-		distributeContents(contents.subList(0, param.training));
+		Utils.shuffle(contents, env.getContext().getRandom());
+		this.owners = super.getAgents();
+		this.nextOwner = 0;
+	}
+
+	/**
+	 * Draws the order of the contents once and distributes the training contents to more than one environment.
+	 * Every content is given to the agent with the same id in each environment,
+	 * and each environment learns the content with its own number of tags. 
+	 * All the draws are made from the random stream of the first environment,
+	 * so it is trained exactly as it would be trained alone.
+	 * The drawn contents keep all their tags, so the test phase of an environment
+	 * should be run with its own number of tags in the parameters.
+	 * @param envs environments that will be trained
+	 * @param nTags number of tags of the contents in each environment, 0 for all the tags
+	 * @param param parameters of the simulation, its number of tags is not used
+	 */
+	public void loadTrainingData(ExternalEnvironment[] envs, int[] nTags, Parameters param) {
+		super.env = envs[0];
+		this.contents = prepareContents(0);
+		Utils.shuffle(contents, envs[0].getContext().getRandom());
+		this.owners = super.getAgents();
+		this.nextOwner = distributeContents(contents.subList(0, param.training), envs, nTags, owners, 0);
+		for(Environment env : envs) {
+			env.trimTagTables();
+		}
+	}
+
+	/**
+	 * Continues the training with the contents that follow the already distributed ones in the order drawn
+	 * by {@link #drawTrainingData(Environment, Parameters)}.
+	 * Every stage continues the round of the agents where the previous stage has left it,
+	 * so the environment ends up trained with the first {@code param.training} contents 
+	 * exactly as if it was trained by {@link #loadTrainingData(Environment, Parameters)}.
+	 * The tag tables are not trimmed since they grow further in the next stages, 
+	 * so {@link Environment#trimTagTables()} should be called after the final stage.
+	 * @param env environment that has been trained with the first {@code trained} contents
+	 * @param param parameters of the simulation
+	 * @param trained number of contents the environment has been trained with
+	 */
+	public void continueTrainingData(Environment env, Parameters param, int trained) {
+		super.env = env;
+		this.nextOwner = distributeContents(contents.subList(trained, param.training), 0, owners, nextOwner);
+	}
+
+	/**
+	 * Makes new contents predictable and distributes the test contents,
+	 * which follow the training contents in the drawn order
+	 * @param env trained environment
+	 * @param param parameters of the simulation
+	 */
+	public void loadTestData(Environment env, Parameters param) {
+		super.env = env;
 		//make new contents predictable
-		Utils.activatePrediction();
-		distributeContents(contents.subList(param.training, param.training+param.test));
+		env.getContext().activatePrediction();
+		distributeContents(contents.subList(param.training, param.training+param.test), 
+				param.nTags, super.getAgents(), 0);
+	}
+
+	/**
+	 * Restores a previously drawn order of the contents instead of training,
+	 * e.g. when the trained state is loaded from a {@link TrainingSnapshot}
+	 * @param param parameters of the simulation
+	 * @param contentIds ids of the contents in the drawn order
+	 * @throws IllegalArgumentException if the ids are not the contents of the loaded data set
+	 */
+	public void restoreContentOrder(Parameters param, List<Long> contentIds) {
+		Map<Long, Content> prepared = new HashMap<>();
+		for(Content content : prepareContents(param)) {
+			prepared.put(content.getId(), content);
+		}
+		if(contentIds.size() != prepared.size()) {
+			throw new IllegalArgumentException(contentIds.size() + " contents were drawn instead of " + prepared.size());
+		}
+		List<Content> restored = new ArrayList<>(contentIds.size());
+		for(long id : contentIds) {
+			Content content = prepared.get(id);
+			if(content == null) {
+				throw new IllegalArgumentException("Content " + id + " is not in the data set");
+			}
+			restored.add(content);
+		}
+		this.contents = restored;
+	}
+
+	/**
+	 * Returns the contents in the order drawn for the current simulation
+	 * @return drawn contents
+	 */
+	public List<Content> getContents() {
+		return contents;
 	}
 
 	public List<Content> prepareContents(Parameters param) {
+		return prepareContents(param.nTags);
+	}
+
+	private List<Content> prepareContents(int nTags) {
 		List<Content> contents = new ArrayList<>();
 		for(long id : settings.keySet()) {
 			if(tagMap.containsKey(id)) {
 				Content content = new Content(id, 0);
-				if(addTagsFromMap(content, param.nTags)) {
+				if(addTagsFromMap(content, nTags)) {
 					content.setPrivacySetting(settings.get(id));
 					contents.add(content);
 				}
@@ -59,27 +216,79 @@ public class BulkContentLoader extends ContentLoader {
 	}
 
 	public void distributeContents(List<Content> contents){		
-		List<Integer> agentList = super.getAgents();
+		distributeContents(contents, 0, super.getAgents(), 0);
+	}
+
+	/**
+	 * Distributes the contents to the agents of the environment in rounds,
+	 * the order of the agents is drawn again at the beginning of each round
+	 * @param contents contents to be distributed
+	 * @param nTags number of tags of the contents in the environment, 0 for all the tags
+	 * @param agentList agents in the order of the current round
+	 * @param next position in the round of the agent that gets the first content
+	 * @return position in the round of the agent that gets the next content
+	 */
+	private int distributeContents(List<Content> contents, int nTags, List<Integer> agentList, int next){
 		if(!agentList.isEmpty()){
 			for(int i = 0; i < contents.size(); i++) {
-				int next = i % agentList.size();
 				if(next == 0) {
-					Collections.shuffle(agentList);
+					Utils.shuffle(agentList, env.getContext().getRandom());
 				}
-				Content content = contents.get(i).copy();
+				Content content = contents.get(i).copy(nTags);
 				content.setOwnerId(agentList.get(next));
-				if(!Utils.isPredictionActive()){
+				if(!env.getContext().isPredictionActive()){
 					env.getAgent(agentList.get(next)).changeDecision(content.getPrivacySetting());
 				}
 				addContentToEnvironment(content);
+				next = (next + 1) % agentList.size();
 			}
 		}
 		else{
 			LOGGER.severe("There is not any agent in the environment");
 			System.exit(0);
 		}
-		printTagInfo();
+		logTagInfo();
 		resetCounts();
+		return next;
+	}
+
+	/**
+	 * Distributes the training contents to the agents of environments with the same agents.
+	 * The owner and the decisions of a content are drawn once from the random stream of the first environment,
+	 * then the content is added to every environment with a single traversal of its tags.
+	 * @param contents contents to be distributed
+	 * @param envs environments with the same agents in the training phase
+	 * @param nTags number of tags of the contents in each environment, 0 for all the tags
+	 * @param agentList agents in the order of the current round
+	 * @param next position in the round of the agent that gets the first content
+	 * @return position in the round of the agent that gets the next content
+	 */
+	private int distributeContents(List<Content> contents, ExternalEnvironment[] envs, int[] nTags, 
+			List<Integer> agentList, int next){
+		if(!agentList.isEmpty()){
+			Content[] variants = new Content[envs.length];
+			for(int i = 0; i < contents.size(); i++) {
+				if(next == 0) {
+					Utils.shuffle(agentList, env.getContext().getRandom());
+				}
+				Content content = contents.get(i).copy();
+				content.setOwnerId(agentList.get(next));
+				env.getAgent(agentList.get(next)).changeDecision(content.getPrivacySetting());
+				for (int v = 0; v < envs.length; v++) {
+					variants[v] = content.copy(nTags[v]);
+				}
+				ExternalEnvironment.addContent(envs, variants);
+				countContent(variants[0]);
+				next = (next + 1) % agentList.size();
+			}
+		}
+		else{
+			LOGGER.severe("There is not any agent in the environment");
+			System.exit(0);
+		}
+		logTagInfo();
+		resetCounts();
+		return next;
 	}
 
 	/**
@@ -90,11 +299,11 @@ public class BulkContentLoader extends ContentLoader {
 	 */
 	private boolean addTagsFromMap(Content content, int nTags) {
 		if(tagMap.containsKey(content.getId())) {
-			List<String> tags = new ArrayList<>(tagMap.get(content.getId()));
-			if(nTags != 0 && nTags < tags.size()) {
-				tags = tags.subList(0, nTags);
+			int[] tags = tagMap.get(content.getId());
+			if(nTags != 0 && nTags < tags.length) {
+				tags = Arrays.copyOf(tags, nTags);
 			}
-			content.addTags(tags);
+			content.addTagIds(tags);
 			return true;
 		}
 		else {
@@ -105,7 +314,8 @@ public class BulkContentLoader extends ContentLoader {
 
 	/**
 	 * Reads tags from a file where first column of a row is content id 
-	 * and the rest is tags. Creates a map from content id to set of tags.
+	 * and the rest is tags. Creates a map from content id to the ids of its tags,
+	 * which are interned by the {@link TagDictionary} of the loader.
 	 * @param tagFile file of tags
 	 */
 	public void loadTags(String tagFile) {
@@ -114,9 +324,9 @@ public class BulkContentLoader extends ContentLoader {
 		long contentId = 0L;
 		while (line != null) {
 			contentId = Long.parseLong(line[0]);
-			List<String> tags = new ArrayList<>();
+			int[] tags = new int[line.length - 1];
 			for (int i = 1; i < line.length; i++) {
-				tags.add(line[i]);
+				tags[i - 1] = dictionary.intern(line[i]);
 			}
 			this.tagMap.put(contentId, tags);
 			line = reader.readLine();
@@ -168,11 +378,15 @@ public class BulkContentLoader extends ContentLoader {
 		for(Content c : contents) {
 			if(c.getPrivacySetting().getSharingDecision(RelationType.FRIEND) 
 					== SharingDecision.PERMIT) {
-				pubTags.addAll(c.getTags());
+				for(int tag : c.getTagIds()) {
+					pubTags.add(tag);
+				}
 				pubn++;
 			}
 			else {
-				priTags.addAll(c.getTags());
+				for(int tag : c.getTagIds()) {
+					priTags.add(tag);
+				}
 				prin++;
 			}
 		}
@@ -181,6 +395,8 @@ public class BulkContentLoader extends ContentLoader {
 	}
 
 	public void setTagMap(Map<Long, List<String>> tagMap) {
-		this.tagMap = tagMap;
+		this.tagMap = new HashMap<>();
+		tagMap.forEach((contentId, tags) -> 
+			this.tagMap.put(contentId, dictionary.internAll(tags)));
 	}
 }
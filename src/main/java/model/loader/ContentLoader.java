@@ -1,11 +1,10 @@
 package model.loader;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -19,7 +18,11 @@ public class ContentLoader {
 	
 	protected Environment env;
 	private int[][] imageCount;
-	private final Set<String> tagList = new LinkedHashSet<>();
+	private final BitSet tagList = new BitSet();
+	/**
+	 * Tag info logged by the loader that has not been taken yet
+	 */
+	private final StringBuilder log = new StringBuilder();
 	private static final Logger LOGGER = Logger.getLogger(ContentLoader.class.getName());
 	
 	public ContentLoader(Environment env) {
@@ -30,9 +33,19 @@ public class ContentLoader {
 	
 	protected void addContentToEnvironment(Content content) {
 		this.env.addContent(content);
+		countContent(content);
+	}
+
+	/**
+	 * Counts the decisions and the tags of a content for {@link #getTagInfo()}
+	 * @param content distributed content
+	 */
+	protected void countContent(Content content) {
 		content.getPrivacySetting().getRebac().forEach(
 				(rType, decision) -> this.imageCount[rType.getId()][decision.getId()]++);
-		this.tagList.addAll(content.getTags());
+		for(int tagId : content.getTagIds()) {
+			this.tagList.set(tagId);
+		}
 	}
 	
 	protected PrivacySetting createFromNumericValues(String[] inputLine, int start) {
@@ -76,15 +89,41 @@ public class ContentLoader {
 		return ps;
 	}
 
-	public void printTagInfo(){
+	/**
+	 * Returns the decisions and the number of different tags of the counted contents
+	 * @return tag info as {@code String}
+	 */
+	public String getTagInfo(){
 		StringBuilder sb = new StringBuilder();
 		for(int i = 0; i < RelationType.values().length; i++) {
 			sb.append("For relation type " + RelationType.values()[i] + ":\n");
 			sb.append(Arrays.toString(SharingDecision.values()) + "\n");
 			sb.append(Arrays.toString(this.imageCount[i]) + "\n");
 		}
-		sb.append(this.tagList.size() + " different tags appeared.");
-		System.out.println(sb.toString());
+		sb.append(this.tagList.cardinality() + " different tags appeared.");
+		return sb.toString();
+	}
+
+	public void printTagInfo(){
+		System.out.println(getTagInfo());
+	}
+
+	/**
+	 * Adds the tag info to the log of the loader instead of printing it,
+	 * so the output of simulations running in parallel can be printed in their order
+	 */
+	public void logTagInfo(){
+		log.append(getTagInfo() + "\n");
+	}
+
+	/**
+	 * Returns the logged tag info and clears the log
+	 * @return logged tag info, empty if nothing has been logged
+	 */
+	public String takeLog(){
+		String logged = log.toString();
+		log.setLength(0);
+		return logged;
 	}
 
 	public void resetCounts(){
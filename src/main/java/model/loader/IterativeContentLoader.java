@@ -1,13 +1,13 @@
 package model.loader;
 
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import app.CsvOperator;
 import model.network.Agent;
 import model.network.Content;
 import model.network.Environment;
 import model.network.RelationType;
+import model.network.TagDictionary;
 import model.privacy.PrivacySetting;
 import utils.Utils;
 
@@ -32,10 +32,10 @@ public class IterativeContentLoader extends ContentLoader {
 			csv.readLine();//TODO HACK for header line
 			String[] inputLine = csv.readLine();
 			while(inputLine != null && count > 0){
-				Collections.shuffle(agentList);
+				Utils.shuffle(agentList, env.getContext().getRandom());
 				Content content = createContent(inputLine, agentList.get(0), numberOfTags);
 				//Checks if the created has tags
-				if(!content.getTags().isEmpty()) {
+				if(content.hasTags()) {
 					addContentToEnvironment(content);
 				}
 				inputLine = csv.readLine();
@@ -69,10 +69,10 @@ public class IterativeContentLoader extends ContentLoader {
 				if(excludeCount == count){
 					agentList.add(excludedAgent);
 				}
-				Collections.shuffle(agentList);
+				Utils.shuffle(agentList, env.getContext().getRandom());
 				Content content = createContent(inputLine, agentList.get(0), 0);
 				//Checks if the created has tags
-				if(!content.getTags().isEmpty()) {
+				if(content.hasTags()) {
 					addContentToEnvironment(content);
 				}
 				inputLine = csv.readLine();
@@ -92,18 +92,18 @@ public class IterativeContentLoader extends ContentLoader {
 		if(!agentList.isEmpty()){
 			String[] inputLine = csv.readLine();
 			while(inputLine != null && count > 0){
-				Collections.shuffle(agentList);
+				Utils.shuffle(agentList, env.getContext().getRandom());
 				agent = env.getAgent(agentList.get(0));
 				Content content = createContent(inputLine, agentList.get(0), 0);
 				/*
 				 * The key difference of this function is the following line. 
 				 * It changes sharing policy of the content according to agent character
 				 */
-				if(!Utils.isPredictionActive()){
+				if(!env.getContext().isPredictionActive()){
 					agent.changeDecision(content.getPrivacySetting());
 				}
 				//Checks if the created has tags
-				if(!content.getTags().isEmpty()) {
+				if(content.hasTags()) {
 					addContentToEnvironment(content);
 				}
 				inputLine = csv.readLine();
@@ -158,14 +158,18 @@ public class IterativeContentLoader extends ContentLoader {
 		if(nTags < 1 && tagValuePairs.length > 0) {
 			nTags = tagValuePairs.length;
 		}
+		TagDictionary dictionary = env.getContext().getTagDictionary();
+		int[] tagIds = new int[nTags];
+		int n = 0;
 		for (int i = 0; i < nTags; i++) {
 			String str = tagValuePairs[i];
 			String[] pair = str.split(":");
 			String tag = pair[0];
 			if(!Utils.isForbiddenTag(tag)){
-				content.addTag(tag);
+				tagIds[n++] = dictionary.intern(tag);
 			}
 		}
+		content.addTagIds(Arrays.copyOf(tagIds, n));
 		return nTags > 0;
 	}
 
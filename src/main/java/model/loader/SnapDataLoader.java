@@ -6,13 +6,14 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
-import model.network.Agent;
 import model.network.Environment;
-import model.network.Relation;
+import model.network.EnvironmentTemplate;
+import model.network.RelationGraph;
 import model.network.RelationType;
-import utils.Utils;
+import utils.IntIndex;
 
 public class SnapDataLoader {
 	
@@ -23,16 +24,32 @@ public class SnapDataLoader {
 	}
 	
 	public void loadData(Environment env, String featFile, String edgeFile){
-		loadNodes(new File(featFile), env);
-		loadEdges(new File(edgeFile), env);
+		loadTemplate(featFile, edgeFile).populate(env);
+	}
+
+	/**
+	 * Loads the agents and the relations once, so that environments of many simulations
+	 * can be populated without parsing the files again
+	 * @param featFile node file
+	 * @param edgeFile edge file
+	 * @return template of the environments
+	 */
+	public EnvironmentTemplate loadTemplate(String featFile, String edgeFile){
+		IntIndex agentIds = new IntIndex();
+		int[] externalIds = loadNodes(new File(featFile), agentIds);
+		RelationGraph graph = loadEdges(new File(edgeFile), agentIds, externalIds.length);
+		return new EnvironmentTemplate(externalIds, graph);
 	}
 	/**
 	 * Loads edges from file
 	 * 
 	 * @param file edge file
-	 * @param env environment
+	 * @param agentIds index from external ids to agent ids
+	 * @param nAgents number of agents
+	 * @return relations between the agents
 	 */
-	private void loadEdges(File file, Environment env){
+	private RelationGraph loadEdges(File file, IntIndex agentIds, int nAgents){
+		RelationGraph.Builder graph = new RelationGraph.Builder();
 		if(file != null){
 			try(BufferedReader br = new BufferedReader(new FileReader(file.getAbsolutePath()))) {
 				String line = br.readLine();
@@ -43,20 +60,26 @@ public class SnapDataLoader {
 					String[] splitted = line.split(" ");
 					source = Integer.parseInt(splitted[0]);
 					dest = Integer.parseInt(splitted[1]);					
-					Relation rel = new Relation(Utils.getRelationId(), rTypes[0], source, dest);
+					RelationType rType = rTypes[0];
 					//if relation type is given in the file
 					if(splitted.length == 3){
 						int rTypeNo = Integer.parseInt(splitted[2]);
 						if(rTypeNo <= rTypes.length){
-							rel.setRelType(rTypes[rTypeNo]);
+							rType = rTypes[rTypeNo];
 						}
 						else{
 							System.err.println("Given relation type is not defined in the system");
 						}
 					}
-					env.addRelation(source, dest, rel);
-					Agent a = env.getAgent(source);
-					a.addRelation(rel);
+					//relations are stored between the dense ids of the agents
+					int sAgentId = agentIds.get(source);
+					int tAgentId = agentIds.get(dest);
+					if(sAgentId == IntIndex.NOT_FOUND || tAgentId == IntIndex.NOT_FOUND){
+						System.err.println("Relation " + source + " " + dest + " is between unknown agents");
+					}
+					else{
+						graph.addRelation(sAgentId, tAgentId, rType);
+					}
 					/*
 					 * if relations in the environment are bidirectional,
 					 * create the both directions.
@@ -72,14 +95,18 @@ public class SnapDataLoader {
 			}
 		}
 		//System.out.println("Edges are loaded");
+		return graph.build(nAgents);
 	}
 	/**
 	 * Loads nodes from file
 	 * 
 	 * @param file node file
-	 * @param env environment
+	 * @param agentIds index that the external ids are mapped to agent ids in
+	 * @return external ids of the agents in the order of their ids
 	 */
-	private void loadNodes(File file, Environment env){
+	private int[] loadNodes(File file, IntIndex agentIds){
+		int[] externalIds = new int[16];
+		int nAgents = 0;
 		if(file != null){
 			try(BufferedReader br = new BufferedReader(new FileReader(file.getAbsolutePath()))) {
 				String line = br.readLine();
@@ -87,8 +114,17 @@ public class SnapDataLoader {
 				while (line != null) {
 					String[] splitted = line.split(" ");
 					id = Integer.parseInt(splitted[0]);
-					Agent a = new Agent(id, "Agent " + id);
-					env.addAgent(a);
+					//external ids are remapped to dense ids in the order of the nodes
+					if(agentIds.get(id) != IntIndex.NOT_FOUND){
+						System.err.println("Agent " + id + " is given more than once");
+					}
+					else{
+						if(nAgents == externalIds.length){
+							externalIds = Arrays.copyOf(externalIds, 2 * nAgents);
+						}
+						agentIds.put(id, nAgents);
+						externalIds[nAgents++] = id;
+					}
 					/* Convert all features from str to int here
 					for(int i = 0; i < splitted.length; i++) {
 			    		effects[i] = Integer.parseInt(splitted[i]);
@@ -106,6 +142,7 @@ public class SnapDataLoader {
 			}
 		}
 		//System.out.println("Nodes are loaded.");
+		return Arrays.copyOf(externalIds, nAgents);
 	}
 	
 }
@@ -0,0 +1,189 @@
+package model.loader;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import model.network.Agent;
+import model.network.Content;
+import model.network.Environment;
+import model.network.RelationType;
+import model.network.TagDictionary;
+
+/**
+ * Binary snapshot of a trained environment.
+ * It stores the order of the contents drawn for the simulation and
+ * the learned state of every agent (tag tables and trust stats),
+ * so that test phases on the same training draw can skip the training phase.
+ * Snapshots are read through a memory mapped buffer.
+ *
+ * Layout: magic, version, number of relation types, tag dictionary,
+ * content order, then the external id and the state of each agent in the order of their ids.
+ * Agent ids in the states are only meaningful if the agents are loaded in the same order.
+ * @author cankurtan
+ *
+ */
+public class TrainingSnapshot {
+
+	/**
+	 * Magic number at the beginning of every snapshot, "PLTE"
+	 */
+	private static final int MAGIC = 0x504C5445;
+	/**
+	 * Version of the layout
+	 */
+	private static final int VERSION = 2;
+
+	private TrainingSnapshot() {}
+
+	/**
+	 * Writes the trained state of the environment to the file.
+	 * The state is written to a temporary file first, which then replaces the file at once,
+	 * so a run that stops while saving does not leave a partial snapshot.
+	 * @param file snapshot file
+	 * @param env trained environment
+	 * @param contents contents in the order they are drawn for the simulation
+	 * @throws IOException if the file can not be written
+	 */
+	public static void save(File file, Environment env, List<Content> contents) throws IOException {
+		File temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+		try {
+			write(temp, env, contents);
+			try {
+				Files.move(temp.toPath(), file.toPath(), 
+						StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp.toPath());
+		}
+	}
+
+	/**
+	 * Writes the snapshot into the file
+	 */
+	private static void write(File file, Environment env, List<Content> contents) throws IOException {
+		try(DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(RelationType.values().length);
+			//tag ids are only meaningful with the dictionary they were interned in
+			TagDictionary dictionary = env.getContext().getTagDictionary();
+			int nTags = dictionary.size();
+			out.writeInt(nTags);
+			for (int i = 0; i < nTags; i++) {
+				byte[] tag = dictionary.getTag(i).getBytes(StandardCharsets.UTF_8);
+				out.writeInt(tag.length);
+				out.write(tag);
+			}
+			out.writeInt(contents.size());
+			for(Content content : contents) {
+				out.writeLong(content.getId());
+			}
+			int nAgents = env.getAgentCount();
+			out.writeInt(nAgents);
+			for (int agentId = 0; agentId < nAgents; agentId++) {
+				Agent agent = env.getAgent(agentId);
+				out.writeInt(agent.getExternalId());
+				agent.writeState(out);
+			}
+		}
+	}
+
+	/**
+	 * Restores the trained state of the agents from the file.
+	 * The environment must have the same agents and relations as the saved one
+	 * and its agents must not have learned anything yet.
+	 * @param file snapshot file
+	 * @param env environment whose agents will be restored
+	 * @return ids of the contents in the order they were drawn for the simulation
+	 * @throws IOException if the file can not be read, is not a snapshot or is corrupt
+	 */
+	public static List<Long> load(File file, Environment env) throws IOException {
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return read(file, in, env);
+		} catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException 
+				| NegativeArraySizeException e) {
+			//e.g. a truncated file or a length that points outside of the file
+			throw new IOException(file.getName() + " is corrupt", e);
+		}
+	}
+
+	/**
+	 * Reads the snapshot from the buffer of the file
+	 */
+	private static List<Long> read(File file, ByteBuffer in, Environment env) throws IOException {
+		if(in.getInt() != MAGIC || in.getInt() != VERSION) {
+			throw new IOException(file.getName() + " is not a training snapshot of this version");
+		}
+		if(in.getInt() != RelationType.values().length) {
+			throw new IOException(file.getName() + " was saved with different relation types");
+		}
+		int[] tagIdMap = readDictionary(in, env.getContext().getTagDictionary());
+		int nContents = readLength(in, Long.BYTES);
+		List<Long> contentIds = new ArrayList<>(nContents);
+		for (int i = 0; i < nContents; i++) {
+			contentIds.add(in.getLong());
+		}
+		int nAgents = in.getInt();
+		for (int i = 0; i < nAgents; i++) {
+			int externalId = in.getInt();
+			Agent agent = env.getAgent(env.getAgentIdOf(externalId));
+			if(agent == null || agent.getId() != i) {
+				throw new IOException("Agent " + externalId + " of the snapshot is not in the environment");
+			}
+			try {
+				agent.readState(in, tagIdMap);
+			} catch (IllegalStateException e) {
+				throw new IOException("Agent " + externalId + " could not be restored: " + e.getMessage(), e);
+			}
+		}
+		return contentIds;
+	}
+
+	/**
+	 * Reads the length of an array and checks that the array fits in the rest of the buffer,
+	 * so a corrupt length does not allocate a huge array
+	 * @param in buffer positioned at the length
+	 * @param elementSize size of an element of the array in bytes
+	 * @return length of the array
+	 * @throws BufferUnderflowException if the array does not fit in the buffer
+	 */
+	private static int readLength(ByteBuffer in, int elementSize) {
+		int length = in.getInt();
+		if(length < 0 || length > in.remaining() / elementSize) {
+			throw new BufferUnderflowException();
+		}
+		return length;
+	}
+
+	/**
+	 * Interns the saved tags and maps their saved ids to the ids of the dictionary of the environment
+	 */
+	private static int[] readDictionary(ByteBuffer in, TagDictionary dictionary) {
+		int nTags = readLength(in, Integer.BYTES);
+		int[] tagIdMap = new int[nTags];
+		for (int i = 0; i < nTags; i++) {
+			byte[] tag = new byte[readLength(in, 1)];
+			in.get(tag);
+			tagIdMap[i] = dictionary.intern(new String(tag, StandardCharsets.UTF_8));
+		}
+		return tagIdMap;
+	}
+}
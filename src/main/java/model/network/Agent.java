@@ -1,26 +1,34 @@
 package model.network;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import model.experiment.SimulationContext;
 import model.experiment.Stats;
 import model.privacy.AgentCharacter;
 import model.privacy.ExternalTagTable;
 import model.privacy.PrivacySetting;
 import model.privacy.SharingDecision;
+import model.privacy.SketchTagTable;
 import model.privacy.TagTable;
-import model.privacy.Trust;
+import model.privacy.TrustTable;
 import utils.Utils;
 
 public class Agent {
 
 	/**
-	 * agent id
+	 * agent id, which is the dense index of the agent in the environment
 	 */
 	private int id;
+	/**
+	 * id of the agent in the data set, which is used for reporting
+	 */
+	private int externalId;
 	/**
 	 * list of agents' own shared contents
 	 */
@@ -33,26 +41,27 @@ public class Agent {
 	 * agent name
 	 */
 	private String name;
-	/**
-	 * map of agent's relationships to other agents
-	 */
-	private final Map<Integer, Relation> relationMap = new LinkedHashMap<>();	
 	/**
 	 * agent character
 	 */
 	private AgentCharacter agentChar;
+	/**
+	 * Context of the simulation that the agent belongs to
+	 */
+	private final SimulationContext context;
 	/**
 	 * Internal tag table of the agent
 	 */
-	private final TagTable tagTable = new TagTable();
+	private final TagTable tagTable;
 	/**
 	 * External tag table of the agent
 	 */
-	private final ExternalTagTable extTagTable = new ExternalTagTable();
+	private final ExternalTagTable extTagTable;
 	/**
-	 * Map of trusts towards other agents that the agent has a relation
+	 * Trusts towards other agents that the agent has a relation, 
+	 * stored at the positions of the neighbours in the order of the relations
 	 */
-	private final Map<Integer, Trust> trusts = new LinkedHashMap<>();
+	private final TrustTable trusts;
 	/**
 	 * Statistics of internal estimation mapped to relation type
 	 */
@@ -67,23 +76,71 @@ public class Agent {
 	 * 
 	 * @param id agent's id
 	 * @param name agent's name
+	 * @param context context of the simulation
+	 */
+	public Agent(int id, String name, SimulationContext context) {
+		this(id, id, name, context);
+	}
+
+	/**
+	 * Agent constructor for the agents of a data set
+	 * 
+	 * @param id agent's id in the environment
+	 * @param externalId agent's id in the data set
+	 * @param name agent's name
+	 * @param context context of the simulation
 	 */
-	public Agent(int id, String name) {
+	public Agent(int id, int externalId, String name, SimulationContext context) {
 		super();
 		this.id = id;
+		this.externalId = externalId;
 		this.name = name;
 		this.agentChar = AgentCharacter.NORMAL;
+		this.context = context;
+		this.tagTable = createTagTable(context);
+		this.extTagTable = new ExternalTagTable(context);
+		this.trusts = new TrustTable();
 		initStats(SharingDecision.values().length);
 	}
 
+	/**
+	 * Copy constructor, the copy does not share any learning state with the other agent
+	 * @param other agent to be copied
+	 * @param context context of the simulation that the copy belongs to
+	 */
+	private Agent(Agent other, SimulationContext context) {
+		this.id = other.id;
+		this.context = context;
+		this.externalId = other.externalId;
+		this.name = other.name;
+		this.agentChar = other.agentChar;
+		this.contentIds.addAll(other.contentIds);
+		this.visibleContentIds.addAll(other.visibleContentIds);
+		this.tagTable = other.tagTable.copy(context);
+		this.extTagTable = other.extTagTable.copy(context);
+		this.trusts = other.trusts.copy();
+		other.internalStats.forEach((rType, stats) -> internalStats.put(rType, stats.copy()));
+		other.externalStats.forEach((rType, stats) -> externalStats.put(rType, stats.copy()));
+	}
+
+	/**
+	 * Returns a copy of the agent with its own tag tables, trusts and statistics
+	 * @param context context of the simulation that the copy belongs to
+	 * @return copy of the agent
+	 */
+	public Agent copy(SimulationContext context) {
+		return new Agent(this, context);
+	}
+
 	/**
 	 * Agent with character
 	 * @param id agent's id
 	 * @param name agent's name
 	 * @param character agent's character
+	 * @param context context of the simulation
 	 */
-	public Agent(int id, String name, AgentCharacter character) {
-		this(id, name);
+	public Agent(int id, String name, AgentCharacter character, SimulationContext context) {
+		this(id, name, context);
 		this.agentChar = character;
 	}
 
@@ -93,17 +150,32 @@ public class Agent {
 	 * @param id agent's id
 	 * @param contentIds agent's contents
 	 * @param name agent's name
-	 * @param relationIds agent's relations
+	 * @param neighbourIds ids of the agents that the agent has a relation
 	 * @param agentChar agent's character
+	 * @param context context of the simulation
 	 */
 	public Agent(int id, List<Long> contentIds, String name, 
-			Map<Integer, Relation> relationMap, AgentCharacter agentChar) {
-		this(id, name);
+			int[] neighbourIds, AgentCharacter agentChar, SimulationContext context) {
+		this(id, name, context);
 		this.contentIds.addAll(contentIds);
-		this.relationMap.putAll(relationMap);
+		for(int neighbourId : neighbourIds) {
+			addNeighbour(neighbourId);
+		}
 		this.setAgentChar(agentChar);
 	}
 
+	/**
+	 * Creates the internal tag table, which is a count-min sketch if a sketch width is configured
+	 * @param context context of the simulation
+	 * @return an empty tag table
+	 */
+	private static TagTable createTagTable(SimulationContext context) {
+		if(context.isSketchEnabled()) {
+			return new SketchTagTable(context, context.getSketchWidth(), context.getSketchDepth());
+		}
+		return new TagTable(context);
+	}
+
 	public List<Long> getContentIds() {
 		return contentIds;
 	}
@@ -115,23 +187,20 @@ public class Agent {
 	public void addContent(Content content) {
 		contentIds.add(content.getId());
 		//to open/close learning while prediction is active use this condition
-		if(!Utils.isPredictionActive() || Utils.isLearningActive()){
+		if(!context.isPredictionActive() || context.isLearningActive()){
 			updateTagTable(content);
 		}
 	}
 
-	public Map<Integer,Relation> getRelationMap() {
-		return relationMap;
-	}
-
 	/**
-	 * Adds a new relation to the agent's relations
+	 * Adds an agent that the agent has a relation to its neighbours.
+	 * Neighbours must be added in the order of the relations of the agent,
+	 * so that their positions are the positions in its adjacency list.
 	 * 
-	 * @param relationId id of the relation
+	 * @param agentId id of the neighbour
 	 */
-	public void addRelation(Relation relation) {
-		relationMap.put(relation.getDestination(), relation);
-		trusts.put(relation.getDestination(), new Trust());
+	public void addNeighbour(int agentId) {
+		trusts.addNeighbour(agentId);
 	}
 
 	/**
@@ -139,48 +208,208 @@ public class Agent {
 	 * @param content agent's own shared content
 	 */
 	protected void updateTagTable(Content content) {
-		List<String> tags = content.getTags();	
+		int[] tags = content.getTagIds();	
 		int[] effects = content.getPrivacySetting().getArrayOfSetting();
-		for(String tag : tags){
+		for(int tag : tags){
 			tagTable.updateTable(tag, effects);
 		}
+		tagTable.endContent();
 	}
 
 	/**
 	 * Updates the external tag table of the agent
 	 * @param content a content that is shared by another agent that the agent has a relation
+	 * @param ownerPosition position of the content owner among the neighbours
 	 */
-	private void updateExternalTagTable(Content content) {		
-		List<String> tags = content.getTags();	
+	private void updateExternalTagTable(Content content, int ownerPosition) {		
+		int[] tags = content.getTagIds();	
 		int[] effects = content.getPrivacySetting().getArrayOfSetting();
 		//if the trust is active, then update according to trust values
-		if(Utils.isTrustBasedLearningActive()){
-			double[] trust = trusts.get(content.getOwnerId()).getValue();
-			for(String tag : tags){
-				extTagTable.updateTable(tag, effects, trust);
+		if(context.isTrustBasedLearningActive()){
+			double[] trust = trusts.getValues();
+			int offset = ownerPosition * RelationType.values().length;
+			for(int tag : tags){
+				extTagTable.updateTable(tag, effects, trust, offset);
 			}
 		}
 		else{
-			for(String tag : tags){
+			for(int tag : tags){
 				extTagTable.updateTable(tag, effects);
 			}
 		}
+		extTagTable.endContent();
+	}
+
+	/**
+	 * Adds a content to the copies of an agent in environments that learn different numbers of its tags,
+	 * e.g. the environments of a tag sweep. The tags are traversed once, and a tag updates the table of a copy
+	 * only if it is one of the tags of the copy's variant of the content.
+	 * @param copies copies of the agent, one for each environment
+	 * @param variants the content with the tags of each environment, which are prefixes of the same tags
+	 * and have the same privacy setting
+	 */
+	public static void addContent(Agent[] copies, Content[] variants) {
+		int[] tags = longestTags(variants);
+		int[] effects = variants[0].getPrivacySetting().getArrayOfSetting();
+		boolean[] learning = new boolean[copies.length];
+		for (int v = 0; v < copies.length; v++) {
+			copies[v].contentIds.add(variants[v].getId());
+			learning[v] = copies[v].isLearning();
+		}
+		for (int p = 0; p < tags.length; p++) {
+			for (int v = 0; v < copies.length; v++) {
+				if(learning[v] && p < variants[v].getTagIds().length) {
+					copies[v].tagTable.updateTable(tags[p], effects);
+				}
+			}
+		}
+		for (int v = 0; v < copies.length; v++) {
+			if(learning[v]) {
+				copies[v].tagTable.endContent();
+			}
+		}
+	}
+
+	/**
+	 * Adds a content that is visible to the copies of an agent in environments that learn different numbers of its tags.
+	 * The tags are traversed once as in {@link #addContent(Agent[], Content[])}, 
+	 * then the trust of each copy is updated with its own variant of the content.
+	 * @param copies copies of the agent, one for each environment
+	 * @param variants the content with the tags of each environment, which are prefixes of the same tags
+	 * and have the same privacy setting
+	 * @param ownerPosition position of the content owner among the neighbours of the agent
+	 */
+	public static void addVisibleContent(Agent[] copies, Content[] variants, int ownerPosition) {
+		copies[0].checkOwner(variants[0], ownerPosition);
+		int[] tags = longestTags(variants);
+		int[] effects = variants[0].getPrivacySetting().getArrayOfSetting();
+		boolean[] learning = new boolean[copies.length];
+		double[][] trusts = new double[copies.length][];
+		int[] offsets = new int[copies.length];
+		for (int v = 0; v < copies.length; v++) {
+			Agent agent = copies[v];
+			agent.visibleContentIds.add(variants[v].getId());
+			learning[v] = agent.isLearning();
+			if(agent.context.isTrustBasedLearningActive()) {
+				trusts[v] = agent.trusts.getValues();
+				offsets[v] = ownerPosition * RelationType.values().length;
+			}
+		}
+		for (int p = 0; p < tags.length; p++) {
+			for (int v = 0; v < copies.length; v++) {
+				if(!learning[v] || p >= variants[v].getTagIds().length) {
+					continue;
+				}
+				if(trusts[v] != null) {
+					copies[v].extTagTable.updateTable(tags[p], effects, trusts[v], offsets[v]);
+				}
+				else {
+					copies[v].extTagTable.updateTable(tags[p], effects);
+				}
+			}
+		}
+		for (int v = 0; v < copies.length; v++) {
+			if(learning[v]) {
+				copies[v].extTagTable.endContent();
+			}
+			copies[v].updateTrust(variants[v], ownerPosition);
+		}
+	}
+
+	/**
+	 * Returns the tags of the variant of a content that has the most tags
+	 * @param variants variants of the same content
+	 * @return tags of the longest variant
+	 */
+	private static int[] longestTags(Content[] variants) {
+		int[] tags = variants[0].getTagIds();
+		for (int v = 1; v < variants.length; v++) {
+			if(variants[v].getTagIds().length > tags.length) {
+				tags = variants[v].getTagIds();
+			}
+		}
+		return tags;
+	}
+
+	/**
+	 * Checks if the agent learns from the contents, 
+	 * which it does until the prediction starts unless learning is kept active
+	 * @return true if the tag tables are updated by new contents
+	 */
+	private boolean isLearning() {
+		return !context.isPredictionActive() || context.isLearningActive();
 	}
 
-	public void addVisibleContent(Content content) {
+	/**
+	 * Adds a content of a neighbour that the agent can view
+	 * @param content content shared by a neighbour
+	 * @param ownerPosition position of the content owner among the neighbours of the agent, 
+	 * see {@link RelationGraph#getReversePosition(int)}
+	 */
+	public void addVisibleContent(Content content, int ownerPosition) {
+		checkOwner(content, ownerPosition);
 		visibleContentIds.add(content.getId());
 		//to open/close learning while prediction is active use this condition
-		if(!Utils.isPredictionActive() || Utils.isLearningActive()){
-			updateExternalTagTable(content);
+		if(!context.isPredictionActive() || context.isLearningActive()){
+			updateExternalTagTable(content, ownerPosition);
+		}
+		updateTrust(content, ownerPosition);
+	}
+
+	/**
+	 * Checks that the content owner is the neighbour at the given position
+	 * @param content content shared by a neighbour
+	 * @param ownerPosition position of the content owner among the neighbours of the agent
+	 * @throws IllegalArgumentException if the owner is not a neighbour at that position, 
+	 * e.g. the agent has no relation to the owner in a directed graph
+	 */
+	private void checkOwner(Content content, int ownerPosition) {
+		if(ownerPosition < 0 || ownerPosition >= trusts.size() 
+				|| trusts.getAgentId(ownerPosition) != content.getOwnerId()) {
+			throw new IllegalArgumentException("Agent " + externalId + " has no relation to the owner of content " 
+					+ content.getId() + " at position " + ownerPosition);
 		}
-		updateTrust(content);
 	}
 
-	private void updateTrust(Content content) {
+	private void updateTrust(Content content, int ownerPosition) {
 		int[] imageOwnerAction = content.getPrivacySetting().getArrayOfSetting();
-		int[] trustOwnerAction = tagTable.getEstimatedDecisions(content.getTags());
-		Trust trust = trusts.get(content.getOwnerId());
-		trust.updateTrust(trustOwnerAction, imageOwnerAction);
+		int[] trustOwnerAction = tagTable.getEstimatedDecisions(content.getTagIds());
+		trusts.update(ownerPosition, trustOwnerAction, imageOwnerAction);
+	}
+
+	/**
+	 * Releases the unused capacity of the tag tables, 
+	 * e.g. when the training phase is over and the tables will not grow much further
+	 */
+	public void trimTagTables() {
+		tagTable.trimToSize();
+		extTagTable.trimToSize();
+	}
+
+	/**
+	 * Writes the learned state of the agent, which are the character, 
+	 * the tag tables and the trust stats, in binary form
+	 * @param out output stream
+	 * @throws IOException if the stream can not be written
+	 */
+	public void writeState(DataOutputStream out) throws IOException {
+		out.writeInt(agentChar.getId());
+		tagTable.writeTo(out);
+		extTagTable.writeTo(out);
+		trusts.writeTo(out);
+	}
+
+	/**
+	 * Reads the state written by {@link #writeState(DataOutputStream)} into an agent
+	 * that has not learned anything yet
+	 * @param in buffer positioned at the beginning of the state
+	 * @param tagIdMap maps the tag ids in the buffer to the ids of the shared dictionary
+	 */
+	public void readState(ByteBuffer in, int[] tagIdMap) {
+		agentChar = AgentCharacter.values()[in.getInt()];
+		tagTable.readFrom(in, tagIdMap);
+		extTagTable.readFrom(in, tagIdMap);
+		trusts.readFrom(in);
 	}
 
 	public String getTagTableStr(int agentId){
@@ -192,10 +421,38 @@ public class Agent {
 	 * @return
 	 */
 	public int[] estimate(Content content) {
-		int[] estimation = tagTable.getEstimatedDecisions(content.getTags());
+		int[] estimation = tagTable.getEstimatedDecisions(content.getTagIds());
 		return estimation;
 	}
 
+	/**
+	 * Agent estimates the privacy settings of a block of contents at once
+	 * against the current state of its tag table.
+	 * Decisions of the i-th content start at index {@code i * RelationType.values().length}
+	 * @param contents contents to be estimated
+	 * @return estimated decisions of all the contents
+	 */
+	public int[] estimateAll(List<Content> contents) {
+		int[][] tagIds = new int[contents.size()][];
+		for (int i = 0; i < tagIds.length; i++) {
+			tagIds[i] = contents.get(i).getTagIds();
+		}
+		int[] estimations = new int[tagIds.length * RelationType.values().length];
+		tagTable.estimateAll(tagIds, estimations);
+		return estimations;
+	}
+
+	/**
+	 * Agent calculates the confidences of the content and the average confidences of its tag table
+	 * without deciding, e.g. to compare them with more than one threshold
+	 * @param content content to be estimated
+	 * @param confValues array that the confidences are written to, indexed by relation type id
+	 * @param avgConfs array that the average confidences are written to, indexed by relation type id
+	 */
+	public void estimateConfidences(Content content, double[] confValues, double[] avgConfs) {
+		tagTable.estimateConfidences(content.getTagIds(), confValues, avgConfs);
+	}
+
 	/**
 	 * Estimates externally a sharing decision of the content for given relation type
 	 * 
@@ -204,7 +461,7 @@ public class Agent {
 	 * @return estimated sharing decision 
 	 */
 	public int estimateExternallyForRelation(Content content, RelationType rType) {
-		return extTagTable.estimateDecisionExternally(content.getTags(), rType.getId());
+		return extTagTable.estimateDecisionExternally(content.getTagIds(), rType.getId());
 	}
 
 	/**
@@ -232,6 +489,10 @@ public class Agent {
 		return id;
 	}
 
+	public int getExternalId() {
+		return externalId;
+	}
+
 	public String getName() {
 		return name;
 	}
@@ -273,7 +534,7 @@ public class Agent {
 				decisions[i] = (decisions[i] + 1) % 2;
 			}
 			else if(getAgentChar() == AgentCharacter.RANDOM){
-				decisions[i] = (int) (Math.random()*2);
+				decisions[i] = context.getRandom().nextInt(2);
 			}
 			else if(getAgentChar() == AgentCharacter.PERMIT){
 				decisions[i] = 1;
@@ -282,15 +543,18 @@ public class Agent {
 		sp.setDecisions(decisions);
 	}
 
-	public String getTrusts() {
+	/**
+	 * Returns the trust values towards the neighbours, which are given with their external ids
+	 * @param env environment of the agent
+	 * @return trust values as {@code String}
+	 */
+	public String getTrusts(Environment env) {
 		StringBuilder sb = new StringBuilder();
-		if(trusts != null && !trusts.isEmpty()){
-			for(int agentId : trusts.keySet()){
-				sb.append(agentId + ": ");
-				double[] trustValues = trusts.get(agentId).getValue();
-				for (int i = 0; i < trustValues.length; i++) {
-					sb.append(Utils.formatDouble(trustValues[i]) + ", ");
-				}
+		int nRelTypes = RelationType.values().length;
+		for(int p = 0; p < trusts.size(); p++){
+			sb.append(env.getAgent(trusts.getAgentId(p)).getExternalId() + ": ");
+			for (int i = 0; i < nRelTypes; i++) {
+				sb.append(Utils.formatDouble(trusts.getValue(p, i)) + ", ");
 			}
 		}
 		return sb.toString();
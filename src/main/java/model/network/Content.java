@@ -1,6 +1,7 @@
 package model.network;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
@@ -19,8 +20,8 @@ public class Content {
 	private String source;
 	/** content owner's agent id */
 	private int ownerId;
-	/** list of content tags */
-	private final List<String> tags = new ArrayList<>();
+	/** ids of the content tags, interned by the {@link TagDictionary} of the simulation */
+	private int[] tagIds = new int[0];
 	/** privacy setting of the content */
 	private PrivacySetting privacySetting;
 	
@@ -44,12 +45,30 @@ public class Content {
 	 * @param ownerId	owner agent's id
 	 * @param tags	list of tags
 	 * @param privacySetting	privacySetting of the content
+	 * @param dictionary	dictionary that the tags are interned in
 	 */
 	public Content(long id, String source, int ownerId, List<String> tags, 
+			PrivacySetting ps, TagDictionary dictionary) {
+		this(id, ownerId);
+		this.source = source;
+		this.addTags(tags, dictionary);
+		this.setPrivacySetting(ps);
+	}
+
+	/**
+	 * Complete Content constructor with interned tags
+	 * 
+	 * @param id	content id
+	 * @param source	source link of the content
+	 * @param ownerId	owner agent's id
+	 * @param tagIds	ids of the tags
+	 * @param privacySetting	privacySetting of the content
+	 */
+	public Content(long id, String source, int ownerId, int[] tagIds, 
 			PrivacySetting ps) {
 		this(id, ownerId);
 		this.source = source;
-		this.addTags(tags);
+		this.tagIds = tagIds;
 		this.setPrivacySetting(ps);
 	}
 
@@ -73,27 +92,66 @@ public class Content {
 	}
 
 	/**
-	 * Returns the list of tags
+	 * Returns the list of tag names.
+	 * The names are looked up in the dictionary, use {@link #getTagIds()} on the hot path
+	 * @param dictionary dictionary that the tags are interned in
 	 * @return list of tags
 	 */
-	public List<String> getTags() {
+	public List<String> getTags(TagDictionary dictionary) {
+		List<String> tags = new ArrayList<>(tagIds.length);
+		for(int tagId : tagIds) {
+			tags.add(dictionary.getTag(tagId));
+		}
 		return tags;
 	}
+
+	/**
+	 * Returns the ids of the tags. The array is not copied, so it should not be modified
+	 * @return ids of the tags
+	 */
+	public int[] getTagIds() {
+		return tagIds;
+	}
+
+	/**
+	 * Returns {@code true} if the content has any tag
+	 * @return {@code true} if the content has any tag
+	 */
+	public boolean hasTags() {
+		return tagIds.length > 0;
+	}
 	
 	/**
 	 * Adds tags as a whole
 	 * @param tags collection of tags
+	 * @param dictionary dictionary that the tags are interned in
+	 */
+	public void addTags(Collection<String> tags, TagDictionary dictionary) {
+		int n = tagIds.length;
+		tagIds = Arrays.copyOf(tagIds, n + tags.size());
+		for(String tag : tags) {
+			tagIds[n++] = dictionary.intern(tag);
+		}
+	}
+
+	/**
+	 * Adds interned tags as a whole
+	 * @param ids ids of the tags
 	 */
-	public void addTags(Collection<String> tags) {
-		this.tags.addAll(tags);
+	public void addTagIds(int[] ids) {
+		int n = tagIds.length;
+		tagIds = Arrays.copyOf(tagIds, n + ids.length);
+		System.arraycopy(ids, 0, tagIds, n, ids.length);
 	}
 	
 	/**
 	 * Adds a given tag to the tag list
 	 * @param tag tag
+	 * @param dictionary dictionary that the tag is interned in
 	 */
-	public void addTag(String tag){
-		tags.add(tag);
+	public void addTag(String tag, TagDictionary dictionary){
+		tagIds = Arrays.copyOf(tagIds, tagIds.length + 1);
+		tagIds[tagIds.length - 1] = dictionary.intern(tag);
 	}
 
 	/**
@@ -141,14 +199,24 @@ public class Content {
 	 */
 	public Content copy() {
 		Content c = new Content(this.id, this.source, this.ownerId, 
-				new ArrayList<>(this.tags), this.privacySetting.copy());
+				this.tagIds.clone(), this.privacySetting.copy());
 		return c;
 	}
+
+	/**
+	 * Creates a deep copy of the content with only its first tags
+	 * @param nTags number of tags the copy keeps, 0 to keep all the tags
+	 * @return a deep copy of the content
+	 */
+	public Content copy(int nTags) {
+		int[] ids = nTags != 0 && nTags < tagIds.length ? Arrays.copyOf(tagIds, nTags) : tagIds.clone();
+		return new Content(this.id, this.source, this.ownerId, ids, this.privacySetting.copy());
+	}
 	
 	@Override
 	public String toString() {
 		return "Content [id=" + id + ", source=" + source + ", "
-				+ "ownerId=" + ownerId + ", tags=" + tags.toString()
+				+ "ownerId=" + ownerId + ", tagIds=" + Arrays.toString(tagIds)
 				+ ", privacyPolicy=" + privacySetting.toString() + "]";
 	}
 }
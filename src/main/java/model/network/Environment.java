@@ -1,14 +1,18 @@
 package model.network;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SplittableRandom;
 
+import model.experiment.SimulationContext;
 import model.experiment.Stats;
 import model.privacy.PrivacySetting;
 import model.privacy.SharingDecision;
-import utils.Utils;
+import utils.IntIndex;
 
 /**
  * Environment stores agents and contents.
@@ -19,13 +23,27 @@ import utils.Utils;
 public class Environment {
 
 	/**
-	 * Agents in the environment, mapped to agentId
+	 * Agents in the environment, the agent with id i is at index i.
+	 * Agent ids are dense indices given by the loader, 
+	 * the ids in the data sets are kept as external ids of the agents.
 	 */
-	protected final Map<Integer, Agent> agents = new HashMap<>();
+	protected Agent[] agents = new Agent[0];
 	/**
-	 * Relationships between agents, mapped to agentId
+	 * Number of agents in the environment
 	 */
-	protected final Map<Integer, Map<Integer, Relation>> relations = new HashMap<>();
+	protected int nAgents = 0;
+	/**
+	 * Index from the external ids of the agents to their ids
+	 */
+	private final IntIndex externalIds = new IntIndex();
+	/**
+	 * Relationships between agents, which are set once the relations are loaded
+	 */
+	protected RelationGraph relations = new RelationGraph.Builder().build(0);
+	/**
+	 * Destination agents of the relations, in the order of the edges of the graph
+	 */
+	protected Agent[] neighbourAgents = new Agent[0];
 	/**
 	 * Shared contents, mapped to contentId
 	 */
@@ -52,18 +70,25 @@ public class Environment {
 	 */
 	protected int nDecision;
 	/**
-	 * Statistics of each agent, mapped to agentId
+	 * Statistics of each agent for each relation type, indexed by agentId and relation type id.
+	 * Row of an agent is created with its first statistics.
 	 */
-	private final Map<Integer, Map<RelationType, Stats>> agentStats = new HashMap<>();
+	private Stats[][] agentStats = new Stats[0][];
+	/**
+	 * Context of the simulation, which is shared by the agents of the environment
+	 */
+	protected final SimulationContext context;
 
 	
 	/**
 	 * A constructor with defining only relation types.
 	 * Co-ownership is not supported, relations are bidirectional.
 	 * @param relationTypes a list of supported relation in the environment
+	 * @param context context of the simulation
 	 */
-	public Environment(List<RelationType> relationTypes) {
+	public Environment(List<RelationType> relationTypes, SimulationContext context) {
 		super();
+		this.context = context;
 		this.relationTypes.addAll(relationTypes);
 		this.nDecision = SharingDecision.values().length;
 		for(RelationType rType : relationTypes) {
@@ -75,35 +100,110 @@ public class Environment {
 	 * 
 	 * @param relationTypes a list of supported relation in the environment
 	 * @param isBidirectional true if the relations are bidirectional
+	 * @param context context of the simulation
 	 */
-	public Environment(List<RelationType> relationTypes, boolean isBidirectional) {
-		this(relationTypes);
+	public Environment(List<RelationType> relationTypes, boolean isBidirectional, SimulationContext context) {
+		this(relationTypes, context);
 		this.isBidirectional = isBidirectional;
 	}
 
+	/**
+	 * Copy constructor, the copy has its own agents, statistics and a copy of the context.
+	 * Relations and contents are immutable, so they are shared with the other environment.
+	 * @param other environment to be copied
+	 * @param random random stream of the copy
+	 */
+	protected Environment(Environment other, SplittableRandom random) {
+		this.context = other.context.copy(random);
+		this.relationTypes.addAll(other.relationTypes);
+		this.nDecision = other.nDecision;
+		this.isBidirectional = other.isBidirectional;
+		other.relationStats.forEach((rType, stats) -> relationStats.put(rType, stats.copy()));
+		this.agents = new Agent[other.nAgents];
+		this.agentStats = new Stats[other.nAgents][];
+		for (int agentId = 0; agentId < other.nAgents; agentId++) {
+			agents[agentId] = other.agents[agentId].copy(context);
+			externalIds.put(agents[agentId].getExternalId(), agentId);
+			Stats[] stats = other.agentStats[agentId];
+			if(stats != null) {
+				agentStats[agentId] = new Stats[stats.length];
+				for (int i = 0; i < stats.length; i++) {
+					agentStats[agentId][i] = stats[i] == null ? null : stats[i].copy();
+				}
+			}
+		}
+		this.nAgents = other.nAgents;
+		this.relations = other.relations;
+		this.neighbourAgents = new Agent[relations.getEdgeCount()];
+		for (int edge = 0; edge < neighbourAgents.length; edge++) {
+			neighbourAgents[edge] = agents[relations.getNeighbour(edge)];
+		}
+		this.contents.putAll(other.contents);
+		this.unsharedContents.addAll(other.unsharedContents);
+	}
+
+	/**
+	 * Gets the context of the simulation
+	 * @return context of the environment
+	 */
+	public SimulationContext getContext() {
+		return context;
+	}
+
 	/**
 	 * Gets the agent based on agent id 
 	 * @param agentId ID of the agent
 	 * @return agent
 	 */
 	public Agent getAgent(int agentId) {
-		return agents.get(agentId);
+		if(agentId < 0 || agentId >= nAgents) {
+			return null;
+		}
+		return agents[agentId];
 	}
 
 	/**
-	 * Adds the agent to the environment
+	 * Adds the agent to the environment.
+	 * Agent ids must be given densely in the order agents are added, 
+	 * the id of the next agent is {@link #getAgentCount()}.
 	 * @param agent agent to be added
 	 */
 	public void addAgent(Agent agent) {
-		agents.put(agent.getId(), agent);
+		if(agent.getId() != nAgents) {
+			throw new IllegalArgumentException("Agent id " + agent.getId() + " is not the next id " + nAgents);
+		}
+		if(externalIds.get(agent.getExternalId()) != IntIndex.NOT_FOUND) {
+			throw new IllegalArgumentException("Agent " + agent.getExternalId() + " is already in the environment");
+		}
+		if(nAgents == agents.length) {
+			agents = Arrays.copyOf(agents, Math.max(16, 2 * nAgents));
+			agentStats = Arrays.copyOf(agentStats, agents.length);
+		}
+		agents[nAgents] = agent;
+		externalIds.put(agent.getExternalId(), nAgents);
+		nAgents++;
 	}
 
 	/**
-	 * Gets the ids of all the agents in the environment
-	 * @return list of ids
+	 * Gets the id of the agent with the given id in the data set
+	 * @param externalId id of the agent in the data set
+	 * @return agent id, {@link IntIndex#NOT_FOUND} if there is no such agent
+	 */
+	public int getAgentIdOf(int externalId) {
+		return externalIds.get(externalId);
+	}
+
+	/**
+	 * Gets the ids of all the agents in the environment, 
+	 * which are {@code 0 ... getAgentCount() - 1}
+	 * @return new list of ids
 	 */
 	public List<Integer> getAgentIds() {
-		return new ArrayList<Integer>(agents.keySet());
+		List<Integer> agentIds = new ArrayList<>(nAgents);
+		for (int i = 0; i < nAgents; i++) {
+			agentIds.add(i);
+		}
+		return agentIds;
 	}
 
 	/**
@@ -111,7 +211,7 @@ public class Environment {
 	 * @return the number of agents
 	 */
 	public int getAgentCount(){
-		return agents.size();
+		return nAgents;
 	}
 
 	/**
@@ -123,8 +223,9 @@ public class Environment {
 	 * Otherwise, returns null
 	 */
 	public Relation getRelation(int sAgentId, int tAgentId) {
-		if(hasRelation(sAgentId, tAgentId)){
-			return relations.get(sAgentId).get(tAgentId);
+		int edge = relations.findEdge(sAgentId, tAgentId);
+		if(edge != RelationGraph.NOT_FOUND){
+			return new Relation(edge, RelationType.values()[relations.getType(edge)], sAgentId, tAgentId);
 		}
 		return null;
 	}
@@ -137,35 +238,38 @@ public class Environment {
 	 * @return true if they have a relation. Otherwise, false
 	 */
 	public boolean hasRelation(int sAgentId, int tAgentId){
-		if(relations.containsKey(sAgentId) && 
-				relations.get(sAgentId).containsKey(tAgentId)){
-			return true;
-		}
-		return false;
+		return relations.findEdge(sAgentId, tAgentId) != RelationGraph.NOT_FOUND;
 	}
 
 	/**
-	 * Gets all the relations an agent has
-	 * 
-	 * @param agentId agent's id
-	 * @return map of agent's all relations
+	 * Gets the graph of the relations between agents
+	 * @return relation graph
 	 */
-	public Map<Integer, Relation> getAgentRelations(int agentId) {
-		return relations.get(agentId);
+	public RelationGraph getRelations() {
+		return relations;
 	}
 
 	/**
-	 * Adds a new relation from source agent to target agent.
+	 * Sets the relations between agents.
+	 * Both ends of every relation must already be agents of the environment, 
+	 * and the source agents get to know their neighbours.
 	 * 
-	 * @param sAgentId source agent's id
-	 * @param tAgentId target agent's id
-	 * @param rel relation between agents
+	 * @param graph relations between agents
 	 */
-	public void addRelation(int sAgentId, int tAgentId, Relation rel) {
-		if(!relations.containsKey(sAgentId)){
-			relations.put(sAgentId, new HashMap<Integer, Relation>());
+	public void setRelations(RelationGraph graph) {
+		if(graph.getNodeCount() != nAgents) {
+			throw new IllegalArgumentException("Relation graph has " + graph.getNodeCount() 
+					+ " agents instead of " + nAgents);
 		}
-		relations.get(sAgentId).put(tAgentId, rel);
+		Agent[] targets = new Agent[graph.getEdgeCount()];
+		for (int agentId = 0; agentId < nAgents; agentId++) {
+			for (int edge = graph.getStart(agentId); edge < graph.getEnd(agentId); edge++) {
+				targets[edge] = agents[graph.getNeighbour(edge)];
+				agents[agentId].addNeighbour(graph.getNeighbour(edge));
+			}
+		}
+		this.relations = graph;
+		this.neighbourAgents = targets;
 	}
 
 	/**
@@ -196,10 +300,10 @@ public class Environment {
 	public void addContent(Content content) {
 		
 		contents.put(content.getId(), content);
-		Agent agent = agents.get(content.getOwnerId());
+		Agent agent = agents[content.getOwnerId()];
 		agent.addContent(content);
 		
-		if(Utils.isPredictionActive()){
+		if(context.isPredictionActive()){
 			PrivacySetting ps = content.getPrivacySetting();
 			int[] estimation = agent.estimate(content);
 			
@@ -208,7 +312,7 @@ public class Environment {
 						ps.getSharingDecision(rType).getId(), estimation[rType.getId()]);
 				//To count how many different times the estimation for the content is wrong
 				if(ps.getSharingDecision(rType).getId() != estimation[rType.getId()]){
-					Utils.addFalsePredicted(content.getId());
+					context.addFalsePredicted(content.getId());
 				}
 			}
 			updateAgentStats(content.getOwnerId(), ps, estimation);
@@ -223,20 +327,16 @@ public class Environment {
 	 * @param estimation estimations for the sharing decision
 	 */
 	public void updateAgentStats(int agentId, PrivacySetting ps, int[] estimation){
-		if(!agentStats.containsKey(agentId)){
-			Map<RelationType, Stats> temp = new HashMap<>();
+		Stats[] stats = agentStats[agentId];
+		if(stats == null){
+			stats = new Stats[RelationType.values().length];
 			for(RelationType rType : relationTypes) {
-				Stats stats = new Stats(nDecision);
-				stats.update(ps.getSharingDecision(rType).getId(), estimation[rType.getId()]);
-				temp.put(rType, stats);
+				stats[rType.getId()] = new Stats(nDecision);
 			}
-			agentStats.put(agentId, temp);
+			agentStats[agentId] = stats;
 		}
-		else {
-			for(RelationType rType : relationTypes) {
-				agentStats.get(agentId).get(rType).update(
-						ps.getSharingDecision(rType).getId(), estimation[rType.getId()]);
-			}
+		for(RelationType rType : relationTypes) {
+			stats[rType.getId()].update(ps.getSharingDecision(rType).getId(), estimation[rType.getId()]);
 		}
 	}
 
@@ -282,7 +382,14 @@ public class Environment {
 	 * @return statistics of the given agent
 	 */
 	public Map<RelationType, Stats> getAgentStats(int agentId) {
-		return agentStats.get(agentId);
+		if(agentId < 0 || agentId >= nAgents || agentStats[agentId] == null) {
+			return null;
+		}
+		Map<RelationType, Stats> stats = new EnumMap<>(RelationType.class);
+		for(RelationType rType : relationTypes) {
+			stats.put(rType, agentStats[agentId][rType.getId()]);
+		}
+		return stats;
 	}
 
 	/**
@@ -298,16 +405,24 @@ public class Environment {
 	 * @return the {@code String} version of the tag tables of all agents
 	 */
 	public String printTagTables(){
-		List<Integer> agentIds = getAgentIds();
 		StringBuilder sb = new StringBuilder();
-		for (int agentId : agentIds) {
-			Agent agent = agents.get(agentId);
-			sb.append("Agent " + agentId + "\n");
+		for (int agentId = 0; agentId < nAgents; agentId++) {
+			Agent agent = agents[agentId];
+			sb.append("Agent " + agent.getExternalId() + "\n");
 			sb.append(agent.getTagTableStr(agentId));
 		}
 		return sb.toString();
 	}
 
+	/**
+	 * Releases the unused capacity of the tag tables of all agents
+	 */
+	public void trimTagTables() {
+		for (int agentId = 0; agentId < nAgents; agentId++) {
+			agents[agentId].trimTagTables();
+		}
+	}
+
 	/**
 	 * Returns {@code String} of the confusion matrix, recalls, and accuracy
 	 * @return {@code String} of the confusion matrix, recalls, and accuracy
@@ -327,8 +442,9 @@ public class Environment {
 	 */
 	public String printTrusts() {
 		StringBuilder sb = new StringBuilder();
-		for(Agent agent : agents.values()){
-			sb.append("Agent #" + agent.getId() + " -> " + agent.getTrusts());
+		for (int agentId = 0; agentId < nAgents; agentId++) {
+			Agent agent = agents[agentId];
+			sb.append("Agent #" + agent.getExternalId() + " -> " + agent.getTrusts(this));
 			sb.append(System.lineSeparator());
 		}
 		return sb.toString();
@@ -336,8 +452,8 @@ public class Environment {
 
 	@Override
 	public String toString() {
-		return "Environment [number of agents=" + agents.size() + ", number of agents who have relations=" + 
-				relations.size() + ",number of contents=" + contents.size() + ", relationTypes=" + 
+		return "Environment [number of agents=" + nAgents + ", number of agents who have relations=" + 
+				relations.getSourceCount() + ",number of contents=" + contents.size() + ", relationTypes=" + 
 				relationTypes.toString() + ",number of unsharedContents=" + unsharedContents.size() + 
 				", isBidirectional=" + isBidirectional + "]";
 	}
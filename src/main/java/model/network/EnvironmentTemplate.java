@@ -0,0 +1,82 @@
+package model.network;
+
+import java.util.Arrays;
+
+import model.experiment.SimulationContext;
+
+/**
+ * Immutable topology of an environment, which is the agents and the relations between them.
+ * A template is loaded once and populates a fresh environment for each simulation,
+ * the environments share the relation graph and only allocate the learning state of their agents.
+ * @author cankurtan
+ *
+ */
+public class EnvironmentTemplate {
+
+	/**
+	 * External ids of the agents, the agent with id i has the external id externalIds[i]
+	 */
+	private final int[] externalIds;
+	/**
+	 * Relations between the agents
+	 */
+	private final RelationGraph relations;
+
+	/**
+	 * Template constructor
+	 * @param externalIds external ids of the agents in the order of their ids
+	 * @param relations relations between the agents
+	 */
+	public EnvironmentTemplate(int[] externalIds, RelationGraph relations) {
+		if(relations.getNodeCount() != externalIds.length) {
+			throw new IllegalArgumentException("Relation graph has " + relations.getNodeCount()
+					+ " agents instead of " + externalIds.length);
+		}
+		this.externalIds = Arrays.copyOf(externalIds, externalIds.length);
+		this.relations = relations;
+	}
+
+	/**
+	 * Adds new agents and the relations of the template to an environment without any agent.
+	 * The agents belong to the context of the environment.
+	 * @param env environment to be populated
+	 */
+	public void populate(Environment env) {
+		if(env.getAgentCount() > 0) {
+			throw new IllegalStateException("Only an empty environment can be populated");
+		}
+		for (int agentId = 0; agentId < externalIds.length; agentId++) {
+			env.addAgent(new Agent(agentId, externalIds[agentId], "Agent " + externalIds[agentId], 
+					env.getContext()));
+		}
+		env.setRelations(relations);
+	}
+
+	/**
+	 * Creates a fresh environment with all the relation types
+	 * @param context context of the simulation that the environment will run
+	 * @return populated environment without any content
+	 */
+	public ExternalEnvironment newExternalEnvironment(SimulationContext context) {
+		ExternalEnvironment env = new ExternalEnvironment(Arrays.asList(RelationType.values()), context);
+		populate(env);
+		return env;
+	}
+
+	/**
+	 * Returns the number of agents
+	 * @return the number of agents
+	 */
+	public int getAgentCount() {
+		return externalIds.length;
+	}
+
+	/**
+	 * Returns the relations between the agents
+	 * @return relation graph
+	 */
+	public RelationGraph getRelations() {
+		return relations;
+	}
+
+}
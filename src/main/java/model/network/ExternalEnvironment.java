@@ -3,8 +3,11 @@ package model.network;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SplittableRandom;
 
 import model.experiment.Stats;
+import model.experiment.MarginRecorder;
+import model.experiment.SimulationContext;
 import model.privacy.AgentCharacter;
 import model.privacy.PrivacySetting;
 import model.privacy.SharingDecision;
@@ -16,49 +19,67 @@ public class ExternalEnvironment extends Environment {
 	 * Statistics of external estimation, mapped to relation types 
 	 */
 	protected final Map<RelationType, Stats> externalStats = new HashMap<>();
+	/**
+	 * Recorder that scores the predictions for more than one threshold, 
+	 * null if only the internal threshold is used
+	 */
+	private MarginRecorder recorder;
 
-	public ExternalEnvironment(List<RelationType> relationTypes) {
-		super(relationTypes);
+	public ExternalEnvironment(List<RelationType> relationTypes, SimulationContext context) {
+		super(relationTypes, context);
 		for(RelationType rType : relationTypes) {
 			externalStats.put(rType, new Stats(super.nDecision));
 		}
 	}
 	
-	public ExternalEnvironment(List<RelationType> relationTypes, boolean isBidirectional) {
-		super(relationTypes, isBidirectional);
+	public ExternalEnvironment(List<RelationType> relationTypes, boolean isBidirectional, 
+			SimulationContext context) {
+		super(relationTypes, isBidirectional, context);
 		for(RelationType rType : relationTypes) {
 			externalStats.put(rType, new Stats(super.nDecision));
 		}
 	}
 
+	/**
+	 * Copy constructor
+	 * @param other environment to be copied
+	 * @param random random stream of the copy
+	 */
+	protected ExternalEnvironment(ExternalEnvironment other, SplittableRandom random) {
+		super(other, random);
+		other.externalStats.forEach((rType, stats) -> externalStats.put(rType, stats.copy()));
+	}
+
+	/**
+	 * Forks the environment, the fork continues from the current state of the agents 
+	 * without changing the state of this environment.
+	 * It is used to evaluate a trained environment more than once.
+	 * The fork draws from the given stream, so forking does not draw from the stream of this environment
+	 * and a training that continues after the fork is not affected by it.
+	 * @param random random stream of the fork
+	 * @return independent copy of the environment
+	 */
+	public ExternalEnvironment fork(SplittableRandom random) {
+		return new ExternalEnvironment(this, random);
+	}
+
 	@Override
 	public void addContent(Content content) {
 		contents.put(content.getId(), content);
-		Agent agent = agents.get(content.getOwnerId());
+		Agent agent = agents[content.getOwnerId()];
 		agent.addContent(content);
-		Map<Integer, Relation> userRelations = relations.get(content.getOwnerId());
 		//sends the shared content to other agents that have relationship
-		if(userRelations != null){
-			for(int id : userRelations.keySet()){
-				/*
-				 * In case of ReBAC is used and more than one relation type,
-				 * If the relation type between agents is permitted, then the agent can view the content
-				 */
-				if(RelationType.values().length > 1) {
-					if(content.getPrivacySetting().getSharingDecision(userRelations.get(id).getType()) == SharingDecision.PERMIT){
-						agents.get(id).addVisibleContent(content);
-					}
-				}
-				/*
-				 * If there is only one relation type, privacy decision is considered as public or not
-				 * Therefore, all the agents having a relation can see each others all contents
-				 */
-				else {
-					agents.get(id).addVisibleContent(content);
-				}
+		int start = relations.getStart(content.getOwnerId());
+		int end = relations.getEnd(content.getOwnerId());
+		for(int edge = start; edge < end; edge++){
+			if(isVisible(content, edge)) {
+				neighbourAgents[edge].addVisibleContent(content, relations.getReversePosition(edge));
 			}
 		}
-		if(Utils.isPredictionActive() && agent.getAgentChar() == AgentCharacter.NORMAL){
+		if(context.isPredictionActive() && agent.getAgentChar() == AgentCharacter.NORMAL && recorder != null){
+			record(agent, content);
+		}
+		else if(context.isPredictionActive() && agent.getAgentChar() == AgentCharacter.NORMAL){
 			PrivacySetting ps = content.getPrivacySetting();
 			int[] estimation = agent.estimate(content);
 			for(RelationType rType : getRelationTypes()){
@@ -80,13 +101,94 @@ public class ExternalEnvironment extends Environment {
 					}
 				}
 				if(ps.getSharingDecision(rType).getId() != estimation[rType.getId()]){
-					Utils.addFalsePredicted(content.getId());
+					context.addFalsePredicted(content.getId());
 				}
 			}
 			updateAgentStats(content.getOwnerId(), ps, estimation);
 		}
 	}
 
+	/**
+	 * Checks if the destination agent of a relation of the owner can view the content
+	 * @param content shared content
+	 * @param edge relation of the owner
+	 * @return true if the neighbour can view the content
+	 */
+	private boolean isVisible(Content content, int edge) {
+		RelationType[] rTypes = RelationType.values();
+		/*
+		 * In case of ReBAC is used and more than one relation type,
+		 * If the relation type between agents is permitted, then the agent can view the content
+		 */
+		if(rTypes.length > 1) {
+			return content.getPrivacySetting().getSharingDecision(rTypes[relations.getType(edge)]) == SharingDecision.PERMIT;
+		}
+		/*
+		 * If there is only one relation type, privacy decision is considered as public or not
+		 * Therefore, all the agents having a relation can see each others all contents
+		 */
+		return true;
+	}
+
+	/**
+	 * Adds a shared content to environments with the same agents and relations 
+	 * that learn different numbers of its tags, e.g. the environments of a tag sweep in the training phase.
+	 * The owner and the privacy setting are the same in every environment, so the neighbours that can view 
+	 * the content are found once and the tags are traversed once for the copies of each agent.
+	 * Nothing is predicted, so the environments must not be in the test phase.
+	 * @param envs environments in the training phase
+	 * @param variants the content with the tags of each environment, which are prefixes of the same tags
+	 * and have the same privacy setting
+	 */
+	public static void addContent(ExternalEnvironment[] envs, Content[] variants) {
+		if(envs[0].context.isPredictionActive()) {
+			throw new IllegalStateException("Contents of more than one environment can only be added for training");
+		}
+		int ownerId = variants[0].getOwnerId();
+		Agent[] copies = new Agent[envs.length];
+		for (int v = 0; v < envs.length; v++) {
+			envs[v].contents.put(variants[v].getId(), variants[v]);
+			copies[v] = envs[v].agents[ownerId];
+		}
+		Agent.addContent(copies, variants);
+		ExternalEnvironment env = envs[0];
+		for(int edge = env.relations.getStart(ownerId); edge < env.relations.getEnd(ownerId); edge++){
+			if(env.isVisible(variants[0], edge)) {
+				for (int v = 0; v < envs.length; v++) {
+					copies[v] = envs[v].neighbourAgents[edge];
+				}
+				Agent.addVisibleContent(copies, variants, env.relations.getReversePosition(edge));
+			}
+		}
+	}
+
+	/**
+	 * Records the prediction of the content to be scored for more than one threshold.
+	 * Every content is also estimated externally, since it is undecidable for some thresholds.
+	 * @param agent owner of the content
+	 * @param content content to be predicted
+	 */
+	private void record(Agent agent, Content content) {
+		PrivacySetting ps = content.getPrivacySetting();
+		double[] confValues = new double[RelationType.values().length];
+		double[] avgConfs = new double[RelationType.values().length];
+		agent.estimateConfidences(content, confValues, avgConfs);
+		for(RelationType rType : getRelationTypes()){
+			int external = agent.estimateExternallyForRelation(content, rType);
+			recorder.record(rType, ps.getSharingDecision(rType).getId(), 
+					confValues[rType.getId()], avgConfs[rType.getId()], external);
+		}
+	}
+
+	/**
+	 * Sets the recorder of the predictions in the test phase, e.g. a {@link model.experiment.ThresholdSweep}.
+	 * While it is set, the statistics of the environment and its agents are not updated.
+	 * @param recorder recorder of the predictions, null to predict with the internal threshold only
+	 */
+	public void setMarginRecorder(MarginRecorder recorder) {
+		this.recorder = recorder;
+	}
+
 	public Map<RelationType, Stats> getExternalStats() {
 		return externalStats;
 	}
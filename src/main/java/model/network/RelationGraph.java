@@ -0,0 +1,226 @@
+package model.network;
+
+import java.util.Arrays;
+
+/**
+ * Immutable directed graph of the relations between agents in compressed sparse row form.
+ * Agents are the dense agent ids {@code 0 ... getNodeCount() - 1}.
+ * Relations of agent a are the edges {@code getStart(a)} ... {@code getEnd(a) - 1},
+ * each edge stores the id of its destination agent and the id of its relation type.
+ * The edges of an agent are ordered by their destination ids, so the position of a neighbour
+ * in the adjacency list of an agent is {@code edge - getStart(agent)}.
+ * Graphs are created with a {@link Builder}.
+ * @author cankurtan
+ *
+ */
+public class RelationGraph {
+
+	/**
+	 * Returned if there is no such relation
+	 */
+	public static final int NOT_FOUND = -1;
+
+	/**
+	 * Edges of agent a start at offsets[a] and end before offsets[a + 1]
+	 */
+	private final int[] offsets;
+	/**
+	 * Destination agent ids of the edges
+	 */
+	private final int[] neighbours;
+	/**
+	 * Relation type ids of the edges
+	 */
+	private final byte[] types;
+	/**
+	 * Positions of the source agents of the edges in the adjacency lists of their destination agents
+	 */
+	private final int[] reversePositions;
+
+	private RelationGraph(int[] offsets, int[] neighbours, byte[] types) {
+		this.offsets = offsets;
+		this.neighbours = neighbours;
+		this.types = types;
+		this.reversePositions = new int[neighbours.length];
+		for (int a = 0; a < getNodeCount(); a++) {
+			for (int edge = offsets[a]; edge < offsets[a + 1]; edge++) {
+				int reverse = findEdge(neighbours[edge], a);
+				reversePositions[edge] = reverse != NOT_FOUND ? reverse - offsets[neighbours[edge]] : NOT_FOUND;
+			}
+		}
+	}
+
+	/**
+	 * Returns the first edge of the agent
+	 * @param agentId id of the source agent
+	 * @return index of the first edge
+	 */
+	public int getStart(int agentId) {
+		return offsets[agentId];
+	}
+
+	/**
+	 * Returns the index after the last edge of the agent
+	 * @param agentId id of the source agent
+	 * @return index after the last edge
+	 */
+	public int getEnd(int agentId) {
+		return offsets[agentId + 1];
+	}
+
+	/**
+	 * Returns the destination agent of the edge
+	 * @param edge index of the edge
+	 * @return destination agent id
+	 */
+	public int getNeighbour(int edge) {
+		return neighbours[edge];
+	}
+
+	/**
+	 * Returns the relation type of the edge
+	 * @param edge index of the edge
+	 * @return relation type id
+	 */
+	public int getType(int edge) {
+		return types[edge];
+	}
+
+	/**
+	 * Returns the position of the source agent of the edge in the adjacency list of its destination agent,
+	 * e.g. to find the trust of the destination agent towards the source agent without a search
+	 * @param edge index of the edge
+	 * @return position of the source agent among the neighbours of the destination agent, 
+	 * {@link #NOT_FOUND} if the destination agent has no relation to the source agent
+	 */
+	public int getReversePosition(int edge) {
+		return reversePositions[edge];
+	}
+
+	/**
+	 * Finds the edge from the source agent to the target agent
+	 * @param sAgentId source agent's id
+	 * @param tAgentId target agent's id
+	 * @return index of the edge, {@link #NOT_FOUND} if there is no relation
+	 */
+	public int findEdge(int sAgentId, int tAgentId) {
+		if(sAgentId < 0 || sAgentId >= getNodeCount()) {
+			return NOT_FOUND;
+		}
+		int edge = Arrays.binarySearch(neighbours, offsets[sAgentId], offsets[sAgentId + 1], tAgentId);
+		return edge >= 0 ? edge : NOT_FOUND;
+	}
+
+	/**
+	 * Returns the number of agents
+	 * @return the number of agents
+	 */
+	public int getNodeCount() {
+		return offsets.length - 1;
+	}
+
+	/**
+	 * Returns the number of agents that have at least one relation
+	 * @return the number of source agents
+	 */
+	public int getSourceCount() {
+		int count = 0;
+		for (int a = 0; a < getNodeCount(); a++) {
+			if(offsets[a + 1] > offsets[a]) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of relations
+	 * @return the number of edges
+	 */
+	public int getEdgeCount() {
+		return neighbours.length;
+	}
+
+	/**
+	 * Collects the relations of a graph.
+	 * If the same relation is added more than once, the last relation type is kept.
+	 */
+	public static class Builder {
+
+		private int[] edgeSources = new int[16];
+		private int[] edgeDestinations = new int[16];
+		private byte[] edgeTypes = new byte[16];
+		private int nEdges = 0;
+
+		/**
+		 * Adds a relation from the source agent to the destination agent
+		 * @param sAgentId source agent's id
+		 * @param tAgentId target agent's id
+		 * @param type relation type
+		 * @return the builder
+		 */
+		public Builder addRelation(int sAgentId, int tAgentId, RelationType type) {
+			if(nEdges == edgeSources.length) {
+				edgeSources = Arrays.copyOf(edgeSources, 2 * nEdges);
+				edgeDestinations = Arrays.copyOf(edgeDestinations, 2 * nEdges);
+				edgeTypes = Arrays.copyOf(edgeTypes, 2 * nEdges);
+			}
+			edgeSources[nEdges] = sAgentId;
+			edgeDestinations[nEdges] = tAgentId;
+			edgeTypes[nEdges] = (byte) type.getId();
+			nEdges++;
+			return this;
+		}
+
+		/**
+		 * Builds the graph from the added relations
+		 * @param nAgents number of agents, every agent id of the relations must be less than it
+		 * @return immutable graph
+		 */
+		public RelationGraph build(int nAgents) {
+			int[] offsets = new int[nAgents + 1];
+			for (int e = 0; e < nEdges; e++) {
+				if(edgeSources[e] < 0 || edgeSources[e] >= nAgents 
+						|| edgeDestinations[e] < 0 || edgeDestinations[e] >= nAgents) {
+					throw new IllegalArgumentException("Relation " + edgeSources[e] + " -> " 
+							+ edgeDestinations[e] + " is not between agents of the graph");
+				}
+				offsets[edgeSources[e] + 1]++;
+			}
+			//counting sort of the edges by their source agents
+			for (int a = 0; a < nAgents; a++) {
+				offsets[a + 1] += offsets[a];
+			}
+			int[] next = Arrays.copyOf(offsets, nAgents);
+			long[] sorted = new long[nEdges];
+			for (int e = 0; e < nEdges; e++) {
+				//destination in the upper bits and insertion order in the lower bits
+				sorted[next[edgeSources[e]]++] = ((long) edgeDestinations[e] << 32) | e;
+			}
+			//order the edges of each agent by destination and drop the repeated relations
+			int[] neighbours = new int[nEdges];
+			byte[] types = new byte[nEdges];
+			int n = 0;
+			int[] compactOffsets = new int[nAgents + 1];
+			for (int a = 0; a < nAgents; a++) {
+				Arrays.sort(sorted, offsets[a], offsets[a + 1]);
+				compactOffsets[a] = n;
+				for (int i = offsets[a]; i < offsets[a + 1]; i++) {
+					int destination = (int) (sorted[i] >>> 32);
+					int e = (int) sorted[i];
+					if(n > compactOffsets[a] && neighbours[n - 1] == destination) {
+						types[n - 1] = edgeTypes[e];
+					}
+					else {
+						neighbours[n] = destination;
+						types[n] = edgeTypes[e];
+						n++;
+					}
+				}
+			}
+			compactOffsets[nAgents] = n;
+			return new RelationGraph(compactOffsets, Arrays.copyOf(neighbours, n), Arrays.copyOf(types, n));
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+package model.network;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tag dictionary interns tags of the contents as dense integer ids.
+ * Tags are interned once while the contents are loaded,
+ * after that contents and tag tables only carry the ids.
+ * Ids are given in the order of first appearance starting from zero.
+ * Every experiment has its own dictionary, which is shared by its content loader
+ * and the contexts of its simulations, see {@link model.experiment.SimulationContext#getTagDictionary()}.
+ * Simulations of the experiment may intern tags in parallel, e.g. while restoring snapshots.
+ * @author cankurtan
+ *
+ */
+public class TagDictionary {
+
+	/**
+	 * Returned for the tags that have not been interned
+	 */
+	public static final int UNKNOWN_TAG = -1;
+	/**
+	 * Tags mapped to their ids
+	 */
+	private final Map<String, Integer> ids = new HashMap<>();
+	/**
+	 * Tags in the order of their ids
+	 */
+	private final List<String> tags = new ArrayList<>();
+
+	/**
+	 * Returns the id of the tag, the tag gets a new id if it has not been interned yet
+	 * @param tag tag name
+	 * @return id of the tag
+	 */
+	public synchronized int intern(String tag) {
+		Integer id = ids.get(tag);
+		if(id == null) {
+			id = tags.size();
+			tags.add(tag);
+			ids.put(tag, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Interns all the given tags
+	 * @param tagList list of tag names
+	 * @return ids of the tags in the same order
+	 */
+	public int[] internAll(List<String> tagList) {
+		int[] tagIds = new int[tagList.size()];
+		for (int i = 0; i < tagIds.length; i++) {
+			tagIds[i] = intern(tagList.get(i));
+		}
+		return tagIds;
+	}
+
+	/**
+	 * Returns the id of the tag without interning it
+	 * @param tag tag name
+	 * @return id of the tag, {@link #UNKNOWN_TAG} if the tag has not been interned
+	 */
+	public synchronized int getId(String tag) {
+		Integer id = ids.get(tag);
+		return id == null ? UNKNOWN_TAG : id;
+	}
+
+	/**
+	 * Returns the tag name of the given id
+	 * @param id tag id
+	 * @return tag name
+	 */
+	public synchronized String getTag(int id) {
+		return tags.get(id);
+	}
+
+	/**
+	 * Returns the number of interned tags
+	 * @return the number of interned tags
+	 */
+	public synchronized int size() {
+		return tags.size();
+	}
+}
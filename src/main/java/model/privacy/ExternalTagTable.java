@@ -1,11 +1,13 @@
 package model.privacy;
 
-import java.util.ArrayList;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.List;
 
+import model.experiment.SimulationContext;
 import model.network.RelationType;
-import utils.Utils;
+import utils.IntIndex;
 
 /**
  * Extended version of a tag table to store
@@ -17,26 +19,99 @@ public class ExternalTagTable extends TagTable {
 
 	/**
 	 * Because of the trust application, support values may vary for relation types.
-	 * Therefore, support values of the tags are stored as a list of arrays
+	 * Therefore, support values of the tags are stored row by row like the effect values
 	 */
-	private final List<double[]> supportValues = new ArrayList<>();
+	private double[] rSupportValues;
+	/**
+	 * Running totals of the trust weighted support values of all the tags for each relation type
+	 */
+	private final double[] totalSupports = new double[nRelTypes];
+	/**
+	 * Reused buffers for the trust weighted values of the content being estimated
+	 */
+	private final double[] supportBuffer = new double[nRelTypes];
+	private final double[] effectBuffer = new double[nRelTypes];
+	/**
+	 * Reused buffers for the trust weighted averages of the table
+	 */
+	private final double[] avgSupportBuffer = new double[nRelTypes];
+	private final double[] avgEffectBuffer = new double[nRelTypes];
 		
-	public ExternalTagTable() {
-		super();
+	/**
+	 * Constructor with the context of a simulation
+	 * @param context context of the simulation
+	 */
+	public ExternalTagTable(SimulationContext context) {
+		this(context, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor with an initial capacity
+	 * @param context context of the simulation
+	 * @param initialCapacity number of tags the table can store before growing
+	 */
+	public ExternalTagTable(SimulationContext context, int initialCapacity) {
+		super(context, initialCapacity);
+		rSupportValues = new double[getCapacity() * nRelTypes];
+	}
+
+	/**
+	 * Copy constructor
+	 * @param other table to be copied
+	 * @param context context of the simulation that the copy belongs to
+	 */
+	protected ExternalTagTable(ExternalTagTable other, SimulationContext context) {
+		super(other, context);
+		rSupportValues = other.rSupportValues.clone();
+		System.arraycopy(other.totalSupports, 0, totalSupports, 0, nRelTypes);
+	}
+
+	@Override
+	public ExternalTagTable copy(SimulationContext context) {
+		return new ExternalTagTable(this, context);
 	}
 	
 	/**
-	 * Estimate a sharing decision for the given relation type by using external tag table 
-	 * @param tagList tags of the content
+	 * Estimate a sharing decision for the given relation type by using external tag table.
+	 * Values of the content tags are summed for the relation type in a single traversal.
+	 * @param tagList ids of the tags of the content
 	 * @param rTypeId relation type id that will be predicted externally
 	 * @return estimated sharing decision
 	 */
-	public int estimateDecisionExternally(List<String> tagList, int rTypeId) {
-		
-		double[] confidence = calculateConfidence(tagList);
-		double[] avg = getAverageConfidence();
-		double confVal = confidence[rTypeId];
-		double avgConf = avg[rTypeId];
+	public int estimateDecisionExternally(int[] tagList, int rTypeId) {
+		final boolean trustBased = context.isTrustBasedLearningActive();
+		double supVal = 0;
+		double effectVal = 0;
+		int nNotFound = 0;
+		for(int tag : tagList){
+			int index = tagIndex.get(tag);
+			if(index != IntIndex.NOT_FOUND){
+				int cell = index * nRelTypes + rTypeId;
+				supVal += trustBased ? rSupportValues[cell] : supportValues[index];
+				effectVal += rValues[cell];
+			}
+			else{
+				nNotFound += 1;
+			}
+		}
+		double avgEffect = size() > 0 ? totalEffects[rTypeId] / size() : 0;
+		double confVal;
+		double avgConf;
+		if(trustBased){
+			//every relation type has different support values
+			double avgSup = size() > 0 ? totalSupports[rTypeId] / size() : 0;
+			confVal = (effectVal + avgEffect * nNotFound) / (supVal + avgSup * nNotFound);
+			avgConf = avgEffect / avgSup;
+		}
+		else{
+			double avgSup = getAverageSupport();
+			confVal = 0;
+			avgConf = avgEffect;
+			if(avgSup > 0) {
+				confVal = (effectVal + avgEffect * nNotFound) / (supVal + avgSup * nNotFound);
+				avgConf = avgEffect / avgSup;
+			}
+		}
 		if(confVal > avgConf){
 			return SharingDecision.PERMIT.getId();
 		}
@@ -44,112 +119,207 @@ public class ExternalTagTable extends TagTable {
 	}
 	
 	/**
-	 * Updates the table according to trust between them
-	 * This will be implemented later
-	 * @param tag
-	 * @param decisions
-	 * @param trust
+	 * Updates the table according to trust between them.
+	 * Both the support and the effect of the tag are weighted by the trust 
+	 * for each relation type, and so are the running totals of the table.
+	 * @param tag tag id
+	 * @param decisions effect of the policy
+	 * @param trust trust values towards the content owner in the order of relation types
 	 */
-	public void updateTable(String tag, int[] decisions, double[] trust) {
-		if(!tags.contains(tag)){
-			tags.add(tag);
-			double[] tempSupportValues = Arrays.copyOf(trust, trust.length);
-			double[] effectArr = new double[decisions.length];
-			for (int i = 0; i < decisions.length; i++) {
-				effectArr[i] = 1.0 * decisions[i] * trust[i];
-			}
-			supportValues.add(tempSupportValues);
-			rValues.add(effectArr);
+	public void updateTable(int tag, int[] decisions, double[] trust) {
+		updateTable(tag, decisions, trust, 0);
+	}
+
+	/**
+	 * Updates the table according to trust between them, 
+	 * reading the trust values from a row of a larger array
+	 * @param tag tag id
+	 * @param decisions effect of the policy
+	 * @param trust array that has the trust values towards the content owner
+	 * @param trustOffset index of the trust value for the first relation type
+	 */
+	public void updateTable(int tag, int[] decisions, double[] trust, int trustOffset) {
+		int index = indexOf(tag);
+		if(index == IntIndex.NOT_FOUND){
+			index = addTag(tag);
 		}
-		else{
-			int index = tags.indexOf(tag);
-			double[] tempSupports = supportValues.get(index);
-			double[] temp = rValues.get(index);
-			//add effects of the tag for each relationship type
-			for (int i = 0; i < decisions.length; i++) {
-				temp[i] += 1.0 * decisions[i] * trust[i];
-				tempSupports[i] += trust[i];
-			}
-			supportValues.set(index, tempSupports);
-			rValues.set(index, temp);
+		final double weight = getScale();
+		int row = index * nRelTypes;
+		//add effects of the tag for each relationship type
+		for (int i = 0; i < decisions.length; i++) {
+			rValues[row + i] += weight * decisions[i] * trust[trustOffset + i];
+			rSupportValues[row + i] += weight * trust[trustOffset + i];
+		}
+		//effect values are shared with the tag table, so are their totals
+		for (int i = 0; i < decisions.length; i++) {
+			totalEffects[i] += weight * decisions[i] * trust[trustOffset + i];
+			totalSupports[i] += weight * trust[trustOffset + i];
 		}
 	}
 	
-	public void updateTable(String tag, int[] decisions){
+	public void updateTable(int tag, int[] decisions){
 		super.updateTable(tag, decisions);
 	}
 	
 	@Override
-	protected double[] calculateConfidence(List<String> tagList){
-		if(Utils.isTrustBasedLearningActive()){
-			double[] effectVal = new double[RelationType.values().length];
-			double[] supportVal = new double[RelationType.values().length];
-			int nNotFound = 0;
-			double[] avgSupports = getAverageSupports();
-			double[] avgEffects = getAverageEffects();
-			
-			for(String str : tagList){
-				//if the tag is in the tag table
-				if(tags.contains(str)){
-					int index = tags.indexOf(str);
-					double[] rebacSupportValues = supportValues.get(index);
-					double[] rebacEffectValues = rValues.get(index);
-					for(int i = 0; i < RelationType.values().length; i++){
-						supportVal[i] += rebacSupportValues[i];
-						effectVal[i] += rebacEffectValues[i];
-					}
-				}
-				// tag is not in the tag table
-				else{
-					nNotFound += 1;
+	public int[] getEstimatedDecisions(int[] tagList){
+		if(context.isTrustBasedLearningActive()){
+			int[] estimations = new int[nRelTypes];
+			calculateTrustedAverages();
+			estimateTrusted(tagList, context.getInternalThreshold(), estimations, 0);
+			return estimations;
+		}
+		else{
+			return super.getEstimatedDecisions(tagList);
+		}
+	}
+
+	@Override
+	public void estimateAll(int[][] tagIdsPerContent, int[] out) {
+		if(context.isTrustBasedLearningActive()){
+			checkOutput(tagIdsPerContent, out);
+			final double threshold = context.getInternalThreshold();
+			calculateTrustedAverages();
+			for(int c = 0; c < tagIdsPerContent.length; c++) {
+				estimateTrusted(tagIdsPerContent[c], threshold, out, c * nRelTypes);
+			}
+		}
+		else {
+			super.estimateAll(tagIdsPerContent, out);
+		}
+	}
+
+	/**
+	 * Calculates the trust weighted averages of the table into the buffers,
+	 * every relation type has different support values
+	 */
+	private void calculateTrustedAverages() {
+		for (int i = 0; i < nRelTypes; i++) {
+			avgSupportBuffer[i] = size() > 0 ? totalSupports[i] / size() : 0;
+			avgEffectBuffer[i] = size() > 0 ? totalEffects[i] / size() : 0;
+		}
+	}
+
+	/**
+	 * Estimates the sharing actions of a content with the trust weighted values.
+	 * The averages of the table must be in the buffers.
+	 * @param tagList ids of the tags of the content
+	 * @param threshold internal threshold
+	 * @param out array that decisions are written to
+	 * @param offset index of the decision for the first relation type
+	 */
+	private void estimateTrusted(int[] tagList, double threshold, int[] out, int offset) {
+		final double[] supportVal = supportBuffer;
+		final double[] effectVal = effectBuffer;
+		Arrays.fill(supportVal, 0);
+		Arrays.fill(effectVal, 0);
+		int nNotFound = 0;
+		for(int tag : tagList){
+			//if the tag is in the tag table
+			int index = tagIndex.get(tag);
+			if(index != IntIndex.NOT_FOUND){
+				int row = index * nRelTypes;
+				for(int i = 0; i < nRelTypes; i++){
+					supportVal[i] += rSupportValues[row + i];
+					effectVal[i] += rValues[row + i];
 				}
 			}
-			double[] confidence = new double[RelationType.values().length];
-			//iterate over relationship types
-			for (int i = 0; i < RelationType.values().length; i++) {
-				confidence[i] = (effectVal[i] + avgEffects[i] * nNotFound) / 
-						(supportVal[i] + avgSupports[i] * nNotFound); //action value against the relationship type
-			}	
-			return confidence;	
+			// tag is not in the tag table
+			else{
+				nNotFound += 1;
+			}
 		}
-		else{
-			return super.calculateConfidence(tagList);
+		//iterate over relationship types
+		for (int i = 0; i < nRelTypes; i++) {
+			double avgSup = avgSupportBuffer[i];
+			double avgEffect = avgEffectBuffer[i];
+			double confidence = (effectVal[i] + avgEffect * nNotFound) / 
+					(supportVal[i] + avgSup * nNotFound); //action value against the relationship type
+			out[offset + i] = decide(confidence, avgEffect / avgSup, threshold);
 		}
 	}
 
-	
 	/**
 	 * Calculates average support value of the tags for each relation type
 	 * @return array of average support values of the tag table
 	 */
 	public double[] getAverageSupports(){
 		double[] supports = new double[RelationType.values().length];
-		if(tags.size() > 0){
-			for(int j = 0; j < RelationType.values().length; j++){
-				double total = 0;
-				for(int i = 0; i < tags.size(); i++){
-					total += this.supportValues.get(i)[j];
-				}
-				supports[j] = total / tags.size();
+		if(size() > 0){
+			for(int j = 0; j < nRelTypes; j++){
+				supports[j] = totalSupports[j] / getScale() / size();
 			}
 		}
 		return supports;
 	}
 	
 	@Override
-	protected double[] getAverageConfidence() {
-		//if trust based learning is active then every relation type will have different support values
-		if(Utils.isTrustBasedLearningActive()){
-			double[] avgSup = getAverageSupports();
-			double[] avgConf = getAverageEffects();		
-			for (int i = 0; i < avgConf.length; i++) {
-				avgConf[i] = avgConf[i] / avgSup[i]; //average effect per support
-			}
-			return avgConf;
+	public void writeTo(DataOutputStream out) throws IOException {
+		super.writeTo(out);
+		for (int i = 0; i < nRelTypes; i++) {
+			out.writeDouble(totalSupports[i] / getScale());
 		}
-		else {
-			return super.getAverageConfidence();
+		for (int i = 0; i < size() * nRelTypes; i++) {
+			out.writeDouble(rSupportValues[i] / getScale());
+		}
+	}
+
+	@Override
+	public void readFrom(ByteBuffer in, int[] tagIdMap) {
+		super.readFrom(in, tagIdMap);
+		for (int i = 0; i < nRelTypes; i++) {
+			totalSupports[i] = in.getDouble();
+		}
+		//tags are added in the written order, so the rows keep their positions
+		for (int i = 0; i < size() * nRelTypes; i++) {
+			rSupportValues[i] = in.getDouble();
 		}
 	}
 
+	@Override
+	protected void rescale(double factor) {
+		super.rescale(factor);
+		for (int i = 0; i < size() * nRelTypes; i++) {
+			rSupportValues[i] *= factor;
+		}
+	}
+
+	@Override
+	protected double getDecayedSupport(int position) {
+		double support = super.getDecayedSupport(position);
+		for (int i = 0; i < nRelTypes; i++) {
+			support = Math.max(support, rSupportValues[position * nRelTypes + i]);
+		}
+		return support;
+	}
+
+	@Override
+	protected void moveRow(int from, int to) {
+		super.moveRow(from, to);
+		System.arraycopy(rSupportValues, from * nRelTypes, rSupportValues, to * nRelTypes, nRelTypes);
+	}
+
+	@Override
+	protected void clearRow(int position) {
+		super.clearRow(position);
+		Arrays.fill(rSupportValues, position * nRelTypes, (position + 1) * nRelTypes, 0);
+	}
+
+	@Override
+	protected void recomputeTotals() {
+		super.recomputeTotals();
+		Arrays.fill(totalSupports, 0);
+		for (int p = 0; p < size(); p++) {
+			for (int i = 0; i < nRelTypes; i++) {
+				totalSupports[i] += rSupportValues[p * nRelTypes + i];
+			}
+		}
+	}
+
+	@Override
+	protected void resize(int capacity) {
+		super.resize(capacity);
+		rSupportValues = Arrays.copyOf(rSupportValues, capacity * nRelTypes);
+	}
+
 }
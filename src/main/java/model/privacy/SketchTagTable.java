@@ -0,0 +1,401 @@
+package model.privacy;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import model.experiment.SimulationContext;
+import model.network.RelationType;
+
+/**
+ * Approximate tag table that keeps the support and effect values of the tags
+ * in count-min sketches instead of a row per tag, so its memory does not depend
+ * on the number of tags an agent observes.
+ *
+ * Each tag is hashed to one counter in each of the {@code depth} rows of {@code width} counters,
+ * and its values are estimated by the minimum of its counters. Values are never negative,
+ * so an estimation is never below the exact value, and with probability at least
+ * {@code 1 - e^-depth} it exceeds the exact value by at most {@code e / width} times the total support
+ * of the table (for the effect values, the total effect of the relation type).
+ * A tag whose counters are all zero has certainly not been observed.
+ * The number of tags, which the average values depend on, is estimated by linear counting
+ * over the support counters of the first row.
+ *
+ * The sketch takes {@code 8 * width * depth * (1 + R)} bytes for R relation types
+ * (see {@link #getMemory(int, int)}), whereas an exact table takes about {@code 8 * (1 + R)} bytes
+ * per tag for its values and 16 to 32 more for its index. At R = 1, the sketch therefore pays off
+ * only for agents that observe more than about {@code width * depth / 3} different tags,
+ * so its width should be derived from the error bound that is needed
+ * (see {@link #widthForError(double)}) rather than chosen large.
+ *
+ * Tags can not be listed, and decaying mode is not supported.
+ * @author cankurtan
+ *
+ */
+public class SketchTagTable extends TagTable {
+
+	/**
+	 * Number of rows if no depth is given
+	 */
+	public static final int DEFAULT_DEPTH = 4;
+	/**
+	 * Multipliers that make the hash functions of the rows independent
+	 */
+	private static final int[] SEEDS = {
+			0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F,
+			0x165667B1, 0xD3A2646C, 0xFD7046C5, 0xB55A4F09};
+	/**
+	 * Maximum number of rows, which is the number of independent hash functions
+	 */
+	public static final int MAX_DEPTH = SEEDS.length;
+
+	/**
+	 * Number of counters in a row
+	 */
+	private final int width;
+	/**
+	 * Number of rows, which is the number of hash functions
+	 */
+	private final int depth;
+	/**
+	 * Support counters, counter c of row r is at r * width + c
+	 */
+	private final double[] supportCounters;
+	/**
+	 * Effect counters, effect of counter c of row r for relation type i is at
+	 * (r * width + c) * nRelTypes + i
+	 */
+	private final double[] effectCounters;
+	/**
+	 * Number of non-zero support counters in the first row
+	 */
+	private int occupied = 0;
+	/**
+	 * Running total of the support values of all the tags
+	 */
+	private double totalSupport = 0;
+	/**
+	 * Reused buffer for the counters of a tag
+	 */
+	private final int[] cellBuffer;
+	/**
+	 * Reused buffer for the effect values of a tag
+	 */
+	private final double[] tagEffectBuffer = new double[nRelTypes];
+	/**
+	 * Reused buffer for the effect values of the content being estimated
+	 */
+	private final double[] effectBuffer = new double[nRelTypes];
+
+	/**
+	 * Sketch with the given dimensions.
+	 * For an error of at most {@code epsilon} times the total with probability {@code 1 - delta},
+	 * width should be {@code ceil(e / epsilon)} and depth should be {@code ceil(ln(1 / delta))}.
+	 * @param context context of the simulation
+	 * @param width number of counters in a row
+	 * @param depth number of rows, at most the number of available hash functions
+	 */
+	public SketchTagTable(SimulationContext context, int width, int depth) {
+		super(context, 0);
+		if(width <= 0 || depth <= 0 || depth > MAX_DEPTH) {
+			throw new IllegalArgumentException("Sketch width must be positive and depth must be in [1, "
+					+ SEEDS.length + "]");
+		}
+		this.width = width;
+		this.depth = depth;
+		this.supportCounters = new double[depth * width];
+		this.effectCounters = new double[depth * width * nRelTypes];
+		this.cellBuffer = new int[depth];
+	}
+
+	/**
+	 * Copy constructor
+	 * @param other sketch to be copied
+	 * @param context context of the simulation that the copy belongs to
+	 */
+	protected SketchTagTable(SketchTagTable other, SimulationContext context) {
+		super(other, context);
+		this.width = other.width;
+		this.depth = other.depth;
+		this.supportCounters = other.supportCounters.clone();
+		this.effectCounters = other.effectCounters.clone();
+		this.occupied = other.occupied;
+		this.totalSupport = other.totalSupport;
+		this.cellBuffer = new int[depth];
+	}
+
+	@Override
+	public SketchTagTable copy(SimulationContext context) {
+		return new SketchTagTable(this, context);
+	}
+
+	/**
+	 * Sketches do not decay, so only a half-life of 0 is accepted
+	 * @throws UnsupportedOperationException if the half-life is positive
+	 */
+	@Override
+	public void setHalfLife(double halfLife) {
+		if(halfLife > 0) {
+			throw new UnsupportedOperationException("Sketch tag tables cannot decay");
+		}
+	}
+
+	@Override
+	public void updateTable(int tag, int[] decisions) {
+		final int[] cells = hashAll(tag);
+		if(supportCounters[cells[0]] == 0) {
+			occupied++;
+		}
+		for (int r = 0; r < depth; r++) {
+			supportCounters[cells[r]] += 1;
+			int row = cells[r] * nRelTypes;
+			for (int i = 0; i < decisions.length; i++) {
+				effectCounters[row + i] += decisions[i];
+			}
+		}
+		totalSupport += 1;
+		for (int i = 0; i < decisions.length; i++) {
+			totalEffects[i] += decisions[i];
+		}
+	}
+
+	/**
+	 * Estimation kernel of the sketch, same as the one of the exact table
+	 * except that the values of the tags are the minimums of their counters
+	 */
+	@Override
+	protected void calculateConfidences(int[] tagList, double avgSup, double[] avgEffects, double[] confValues) {
+		final double[] effectVal = effectBuffer;
+		Arrays.fill(effectVal, 0);
+		double supVal = 0;
+		int nNotFound = 0;
+		for(int tag : tagList) {
+			double support = lookup(tag, tagEffectBuffer);
+			if(support > 0) {
+				supVal += support;
+				for(int i = 0; i < nRelTypes; i++){
+					effectVal[i] += tagEffectBuffer[i];
+				}
+			}
+			else {
+				nNotFound += 1;
+			}
+		}
+		fillConfidences(effectVal, supVal, nNotFound, avgSup, avgEffects, confValues);
+	}
+
+	/**
+	 * Estimates the values of the tag
+	 * @param tag tag id
+	 * @param effects array that the effect values of the tag are written to
+	 * @return support value of the tag, 0 if the tag has not been observed
+	 */
+	private double lookup(int tag, double[] effects) {
+		final int[] cells = hashAll(tag);
+		double support = Double.MAX_VALUE;
+		Arrays.fill(effects, Double.MAX_VALUE);
+		for (int r = 0; r < depth; r++) {
+			support = Math.min(support, supportCounters[cells[r]]);
+			int row = cells[r] * nRelTypes;
+			for (int i = 0; i < nRelTypes; i++) {
+				effects[i] = Math.min(effects[i], effectCounters[row + i]);
+			}
+		}
+		return support;
+	}
+
+	/**
+	 * Finds the counter of the tag in each row
+	 * @param tag tag id
+	 * @return reused array of counter indices
+	 */
+	private int[] hashAll(int tag) {
+		for (int r = 0; r < depth; r++) {
+			int h = (tag + 1) * SEEDS[r];
+			h ^= h >>> 15;
+			h *= 0x2C1B3C6D;
+			h ^= h >>> 13;
+			//maps the hash to [0, width) without a division
+			cellBuffer[r] = r * width + (int) (((h & 0xFFFFFFFFL) * width) >>> 32);
+		}
+		return cellBuffer;
+	}
+
+	@Override
+	protected double getAverageSupport() {
+		int nTags = size();
+		return nTags > 0 ? totalSupport / nTags : 0;
+	}
+
+	@Override
+	public double[] getAverageEffects() {
+		double[] avg = new double[RelationType.values().length];
+		int nTags = size();
+		if(nTags > 0){
+			for (int j = 0; j < avg.length; j++) {
+				avg[j] = totalEffects[j] / nTags;
+			}
+		}
+		return avg;
+	}
+
+	@Override
+	public double getSupportOfTag(int tag) {
+		return lookup(tag, tagEffectBuffer);
+	}
+
+	/**
+	 * Estimates the number of observed tags by linear counting over the first row
+	 * @return estimated number of tags
+	 */
+	@Override
+	public int size() {
+		if(occupied == 0) {
+			return 0;
+		}
+		if(occupied == width) {
+			//every counter is taken, the estimation saturates
+			return (int) Math.round(width * Math.log(width));
+		}
+		return (int) Math.max(1, Math.round(-width * Math.log(1 - (double) occupied / width)));
+	}
+
+	/**
+	 * Returns the number of counters in a row
+	 * @return sketch width
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the number of rows
+	 * @return sketch depth
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Returns the additive error bound of the estimated support values relative to the total support,
+	 * which holds with probability {@link #getConfidence()}
+	 * @return error bound {@code e / width}
+	 */
+	public double getErrorBound() {
+		return Math.E / width;
+	}
+
+	/**
+	 * Returns the probability that an estimation is within the error bound
+	 * @return {@code 1 - e^-depth}
+	 */
+	public double getConfidence() {
+		return 1 - Math.exp(-depth);
+	}
+
+	/**
+	 * Returns the smallest width whose error bound {@code e / width} is at most the given error
+	 * @param errorBound additive error bound relative to the total support, in (0, 1)
+	 * @return sketch width
+	 */
+	public static int widthForError(double errorBound) {
+		if(errorBound <= 0 || errorBound >= 1) {
+			throw new IllegalArgumentException("Error bound must be in (0, 1): " + errorBound);
+		}
+		return (int) Math.ceil(Math.E / errorBound);
+	}
+
+	/**
+	 * Returns the memory of the counters of a sketch
+	 * @param width number of counters in a row
+	 * @param depth number of rows
+	 * @return memory in bytes
+	 */
+	public static long getMemory(int width, int depth) {
+		return (long) Double.BYTES * width * depth * (1 + RelationType.values().length);
+	}
+
+	/**
+	 * Memory of the sketch is fixed
+	 */
+	@Override
+	public int getCapacity() {
+		return Integer.MAX_VALUE;
+	}
+
+	@Override
+	public void ensureCapacity(int minCapacity) {
+		//memory of the sketch is fixed
+	}
+
+	@Override
+	public void trimToSize() {
+		//memory of the sketch is fixed
+	}
+
+	/**
+	 * Tags are not stored by the sketch
+	 * @return an empty array
+	 */
+	@Override
+	public int[] getTagIds() {
+		return new int[0];
+	}
+
+	/**
+	 * Writes the dimensions and the counters of the sketch.
+	 * Counters depend on the hashes of the tag ids, so the sketch can only be read
+	 * with the same tag dictionary.
+	 */
+	@Override
+	public void writeTo(DataOutputStream out) throws IOException {
+		out.writeInt(width);
+		out.writeInt(depth);
+		out.writeInt(occupied);
+		out.writeDouble(totalSupport);
+		for (int i = 0; i < nRelTypes; i++) {
+			out.writeDouble(totalEffects[i]);
+		}
+		for (int i = 0; i < supportCounters.length; i++) {
+			out.writeDouble(supportCounters[i]);
+		}
+		for (int i = 0; i < effectCounters.length; i++) {
+			out.writeDouble(effectCounters[i]);
+		}
+	}
+
+	@Override
+	public void readFrom(ByteBuffer in, int[] tagIdMap) {
+		if(totalSupport > 0) {
+			throw new IllegalStateException("Tag table must be empty to be read");
+		}
+		if(in.getInt() != width || in.getInt() != depth) {
+			throw new IllegalStateException("Sketch was saved with different dimensions");
+		}
+		for (int i = 0; i < tagIdMap.length; i++) {
+			if(tagIdMap[i] != i) {
+				throw new IllegalStateException("Sketch was saved with a different tag dictionary");
+			}
+		}
+		occupied = in.getInt();
+		totalSupport = in.getDouble();
+		for (int i = 0; i < nRelTypes; i++) {
+			totalEffects[i] = in.getDouble();
+		}
+		for (int i = 0; i < supportCounters.length; i++) {
+			supportCounters[i] = in.getDouble();
+		}
+		for (int i = 0; i < effectCounters.length; i++) {
+			effectCounters[i] = in.getDouble();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Count-min sketch [width=" + width + ", depth=" + depth + ", estimated tags=" + size()
+				+ ", total support=" + totalSupport + ", average effects="
+				+ Arrays.toString(getAverageEffects()) + "]\n";
+	}
+
+}
@@ -1,10 +1,15 @@
 package model.privacy;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.text.DecimalFormat;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
+import model.experiment.SimulationContext;
 import model.network.RelationType;
+import model.network.TagDictionary;
+import utils.IntIndex;
 import utils.Utils;
 
 /**
@@ -15,83 +20,474 @@ import utils.Utils;
 public class TagTable {
 
 	/**
-	 * List of tags
+	 * Number of tags in the table
 	 */
-	protected final List<String> tags = new ArrayList<>();
+	private int size = 0;
 	/**
-	 * List of the effect values for each relation type
+	 * Index from tag ids to their positions in the table.
+	 * Tag names are only kept by the {@link TagDictionary} of the context, so the table
+	 * is a sparse vector over the global vocabulary holding only the tags it observed.
 	 */
-	protected final List<double[]> rValues = new ArrayList<>();
+	protected final IntIndex tagIndex;
+	/**
+	 * Context of the simulation that the table belongs to
+	 */
+	protected final SimulationContext context;
+	/**
+	 * Initial number of tags a table can store before growing its columns.
+	 * Tables allocate their columns when the first tag arrives,
+	 * so agents that never observe a content do not hold any storage.
+	 */
+	public static final int DEFAULT_CAPACITY = 0;
+	/**
+	 * Smallest capacity the columns grow to
+	 */
+	public static final int MIN_CAPACITY = 8;
+	/**
+	 * Ratio by which the columns grow when the table is full
+	 */
+	public static final double GROWTH_FACTOR = 1.5;
+	/**
+	 * Number of relation types, which is the width of a row of effect values
+	 */
+	protected final int nRelTypes = RelationType.values().length;
+	/**
+	 * Effect values of the tags, stored row by row.
+	 * Effect of the tag at position p for relation type i is at p * nRelTypes + i
+	 */
+	protected double[] rValues;
+	/**
+	 * Support values of the tags in the order of their positions
+	 */
+	protected double[] supportValues;
+	/**
+	 * Running total of the support values of all the tags
+	 */
+	private double totalSupport = 0;
+	/**
+	 * Running totals of the effect values of all the tags for each relation type
+	 */
+	protected final double[] totalEffects = new double[nRelTypes];
+	/**
+	 * Reused buffer for the effect values of the content being estimated
+	 */
+	private final double[] effectBuffer = new double[nRelTypes];
+	/**
+	 * Reused buffers for the confidence values of the content being estimated and the average confidences
+	 */
+	private final double[] confBuffer = new double[nRelTypes];
+	private final double[] avgConfBuffer = new double[nRelTypes];
+	/**
+	 * Reused buffer for the average effects of the table
+	 */
+	private final double[] avgEffectBuffer = new double[nRelTypes];
+	/**
+	 * Scale reached by the values before they are renormalized in decaying mode
+	 */
+	public static final double RENORMALIZE_SCALE = 2;
+	/**
+	 * Tags whose decayed support falls below this value are removed at renormalization
+	 */
+	public static final double MIN_DECAYED_SUPPORT = 0.01;
+	/**
+	 * Factor applied to all the values after each content, 1 if the table does not decay
+	 */
+	private double decay = 1;
+	/**
+	 * Instead of decaying every value after each content, new values are scaled up by 1 / decay^t.
+	 * Confidence is a ratio of values with the same scale, so the estimations do not change
+	 */
+	private double scale = 1;
+
+	/**
+	 * Constructor with the context of a simulation
+	 * @param context context of the simulation
+	 */
+	public TagTable(SimulationContext context) {
+		this(context, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor with an initial capacity.
+	 * The table decays with the half-life of the context.
+	 * @param context context of the simulation
+	 * @param initialCapacity number of tags the table can store before growing
+	 */
+	public TagTable(SimulationContext context, int initialCapacity) {
+		int capacity = Math.max(0, initialCapacity);
+		this.context = context;
+		tagIndex = new IntIndex();
+		supportValues = new double[capacity];
+		rValues = new double[capacity * nRelTypes];
+		setHalfLife(context.getTagHalfLife());
+	}
 
 	/**
-	 * List of the support values of each tags
+	 * Copy constructor, the copy does not share any state with the other table
+	 * @param other table to be copied
+	 * @param context context of the simulation that the copy belongs to
 	 */
-	private final List<Double> supportValues = new ArrayList<>();
+	protected TagTable(TagTable other, SimulationContext context) {
+		this.context = context;
+		size = other.size;
+		tagIndex = other.tagIndex.copy();
+		supportValues = other.supportValues.clone();
+		rValues = other.rValues.clone();
+		totalSupport = other.totalSupport;
+		System.arraycopy(other.totalEffects, 0, totalEffects, 0, nRelTypes);
+		decay = other.decay;
+		scale = other.scale;
+	}
 
 	/**
-	 * Empty constructor
+	 * Returns an independent copy of the table, e.g. to continue from the same learned state
+	 * in more than one simulation. Subclasses return copies of their own type.
+	 * @param context context of the simulation that the copy belongs to
+	 * @return copy of the table
 	 */
-	public TagTable() {}
+	public TagTable copy(SimulationContext context) {
+		return new TagTable(this, context);
+	}
+
+	/**
+	 * Sets the decaying mode of the table. The values of the tags decay exponentially
+	 * with the number of contents observed by the table, so that recent contents weigh more,
+	 * and tags that have not been seen for long are removed to keep the table bounded.
+	 * @param halfLife number of contents after which a value weighs half, 0 to disable decaying
+	 */
+	public void setHalfLife(double halfLife) {
+		this.decay = halfLife > 0 ? Math.pow(0.5, 1 / halfLife) : 1;
+	}
 
 	/**
 	 * Updates tag table.
 	 * If the tag is already stored in the table, the only updates values.
 	 * Otherwise adds the tag to the table and initiates the support and effect values.
 	 * 
-	 * @param tag tag name 
+	 * @param tag tag id 
 	 * @param decisions effect of the policy
 	 */
-	public void updateTable(String tag, int[] decisions){
-		if(!tags.contains(tag)){
-			tags.add(tag);
-			supportValues.add(1.0);
-			double[] temp = new double[decisions.length];
-			for (int i = 0; i < decisions.length; i++) {
-				temp[i] = 1.0 * decisions[i];
+	public void updateTable(int tag, int[] decisions){
+		int index = indexOf(tag);
+		if(index == IntIndex.NOT_FOUND){
+			index = addTag(tag);
+		}
+		final double weight = scale;
+		//increase the support value of the tag by one
+		supportValues[index] += weight;
+		//add new decisions for each relation type
+		int row = index * nRelTypes;
+		for (int i = 0; i < decisions.length; i++) {
+			rValues[row + i] += weight * decisions[i];
+		}
+		//keep the table totals up to date so that averages do not need a scan
+		totalSupport += weight;
+		for (int i = 0; i < decisions.length; i++) {
+			totalEffects[i] += weight * decisions[i];
+		}
+	}
+
+	/**
+	 * Notifies the table that all the tags of a content have been added.
+	 * In decaying mode, values of the earlier contents decay by one step, which costs O(1)
+	 * except for the renormalizations once the scale reaches {@link #RENORMALIZE_SCALE}.
+	 */
+	public void endContent() {
+		if(decay < 1) {
+			scale /= decay;
+			if(scale >= RENORMALIZE_SCALE) {
+				renormalize();
 			}
-			rValues.add(temp);
-		}
-		else{
-			//find the index of the given tag
-			final int index = tags.indexOf(tag);
-			//increase the support value of the tag by one
-			supportValues.set(index, supportValues.get(index) + 1);
-			//get effect values of the tag
-			double[] temp = rValues.get(index);
-			//add new decisions for each relation type
-			for (int i = 0; i < decisions.length; i++) {
-				temp[i] += decisions[i];
+		}
+	}
+
+	/**
+	 * Returns the weight of the values added for the current content
+	 * @return current scale of the values
+	 */
+	protected double getScale() {
+		return scale;
+	}
+
+	/**
+	 * Brings the values back to the scale of one and removes the tags
+	 * whose decayed support is below {@link #MIN_DECAYED_SUPPORT}
+	 */
+	private void renormalize() {
+		rescale(1 / scale);
+		scale = 1;
+		int[] tagIds = getTagIds();
+		tagIndex.clear();
+		int n = 0;
+		for (int p = 0; p < size; p++) {
+			if(getDecayedSupport(p) >= MIN_DECAYED_SUPPORT) {
+				if(p != n) {
+					moveRow(p, n);
+				}
+				tagIndex.put(tagIds[p], n);
+				n++;
+			}
+		}
+		for (int p = n; p < size; p++) {
+			clearRow(p);
+		}
+		size = n;
+		recomputeTotals();
+	}
+
+	/**
+	 * Multiplies all the values of the table by the factor
+	 * @param factor scaling factor
+	 */
+	protected void rescale(double factor) {
+		for (int p = 0; p < size; p++) {
+			supportValues[p] *= factor;
+		}
+		for (int i = 0; i < size * nRelTypes; i++) {
+			rValues[i] *= factor;
+		}
+	}
+
+	/**
+	 * Returns the support of the tag at the given position, which decides if the tag is kept
+	 * @param position position of the tag
+	 * @return support value of the tag
+	 */
+	protected double getDecayedSupport(int position) {
+		return supportValues[position];
+	}
+
+	/**
+	 * Moves the values of a tag to another position
+	 * @param from current position of the tag
+	 * @param to new position of the tag
+	 */
+	protected void moveRow(int from, int to) {
+		supportValues[to] = supportValues[from];
+		System.arraycopy(rValues, from * nRelTypes, rValues, to * nRelTypes, nRelTypes);
+	}
+
+	/**
+	 * Resets the values at the given position
+	 * @param position position of a removed tag
+	 */
+	protected void clearRow(int position) {
+		supportValues[position] = 0;
+		Arrays.fill(rValues, position * nRelTypes, (position + 1) * nRelTypes, 0);
+	}
+
+	/**
+	 * Recalculates the running totals from the values of the tags
+	 */
+	protected void recomputeTotals() {
+		totalSupport = 0;
+		Arrays.fill(totalEffects, 0);
+		for (int p = 0; p < size; p++) {
+			totalSupport += supportValues[p];
+			for (int i = 0; i < nRelTypes; i++) {
+				totalEffects[i] += rValues[p * nRelTypes + i];
 			}
 		}
 	}
 
 	/**
 	 * Estimates the sharing action
-	 * @param tagList list of the tags of the content
+	 * @param tagList ids of the tags of the content
 	 * @return predicted action value
 	 */
-	public int[] getEstimatedDecisions(List<String> tagList){
-		double[] confidence = calculateConfidence(tagList);
-		double[] avg = getAverageConfidence();
-		int[] estimations = new int[RelationType.values().length];
-		for(int i = 0 ; i < RelationType.values().length; i++){
-			double confValue = confidence[i];
-			double avgConf = avg[i];
-			//This part is for internally undecidable state
-			if(Utils.isExternalEnabled() && (confValue >= avgConf - Utils.getInternalThreshold())
-					&& (confValue <= avgConf + Utils.getInternalThreshold())){
-				estimations[i] = Utils.INTERNALLY_UNDECIDABLE_STATE;
+	public int[] getEstimatedDecisions(int[] tagList){
+		int[] estimations = new int[nRelTypes];
+		final double avgSup = calculateAverages(avgEffectBuffer, avgConfBuffer);
+		estimate(tagList, avgSup, context.getInternalThreshold(), estimations, 0);
+		return estimations;
+	}
+
+	/**
+	 * Estimates the sharing actions of many contents against the current state of the table,
+	 * e.g. to re-evaluate a block of contents with a frozen table.
+	 * The averages of the table are calculated once for the whole block 
+	 * and the buffers of the estimation are reused between the contents.
+	 * Decisions of the content at index c are written to 
+	 * {@code out[c * nRelTypes]} ... {@code out[c * nRelTypes + nRelTypes - 1]}.
+	 * 
+	 * @param tagIdsPerContent ids of the tags of each content
+	 * @param out array of at least {@code tagIdsPerContent.length * nRelTypes} decisions
+	 */
+	public void estimateAll(int[][] tagIdsPerContent, int[] out){
+		checkOutput(tagIdsPerContent, out);
+		final double threshold = context.getInternalThreshold();
+		final double avgSup = calculateAverages(avgEffectBuffer, avgConfBuffer);
+		for(int c = 0; c < tagIdsPerContent.length; c++) {
+			estimate(tagIdsPerContent[c], avgSup, threshold, out, c * nRelTypes);
+		}
+	}
+
+	/**
+	 * Compares the confidence of the content with the average confidence of the table 
+	 * for each relation type. The averages of the table must be in the buffers.
+	 * 
+	 * @param tagList ids of the tags of the content
+	 * @param avgSup average support of the tags
+	 * @param threshold internal threshold
+	 * @param out array that decisions are written to
+	 * @param offset index of the decision for the first relation type
+	 */
+	private void estimate(int[] tagList, double avgSup, double threshold, int[] out, int offset){
+		calculateConfidences(tagList, avgSup, avgEffectBuffer, confBuffer);
+		for(int i = 0; i < nRelTypes; i++){
+			out[offset + i] = decide(confBuffer[i], avgConfBuffer[i], threshold);
+		}
+	}
+
+	/**
+	 * Checks that the output array of a block estimation can hold the decisions of all the contents
+	 * @param tagIdsPerContent ids of the tags of each content
+	 * @param out array that decisions are written to
+	 */
+	protected final void checkOutput(int[][] tagIdsPerContent, int[] out) {
+		if(out.length < tagIdsPerContent.length * nRelTypes) {
+			throw new IllegalArgumentException("Output array can not hold the decisions of " 
+					+ tagIdsPerContent.length + " contents");
+		}
+	}
+
+	/**
+	 * Calculates the confidence of the content and the average confidence of the table
+	 * for each relation type without deciding, so the confidences can be compared 
+	 * with more than one threshold by {@link #decide(double, double, double)}.
+	 * 
+	 * @param tagList ids of the tags of the content
+	 * @param confValues array that the confidences of the content are written to, indexed by relation type id
+	 * @param avgConfs array that the average confidences are written to, indexed by relation type id
+	 */
+	public void estimateConfidences(int[] tagList, double[] confValues, double[] avgConfs){
+		final double avgSup = calculateAverages(avgEffectBuffer, avgConfs);
+		calculateConfidences(tagList, avgSup, avgEffectBuffer, confValues);
+	}
+
+	/**
+	 * Calculates the table level values of an estimation from the running totals,
+	 * which do not depend on the content
+	 * @param avgEffects array that the average effects are written to, indexed by relation type id
+	 * @param avgConfs array that the average confidences are written to, indexed by relation type id
+	 * @return average support of the tags
+	 */
+	private double calculateAverages(double[] avgEffects, double[] avgConfs) {
+		final int nTags = size();
+		final double avgSup = getAverageSupport();
+		for(int i = 0; i < nRelTypes; i++){
+			double avgEffect = nTags > 0 ? totalEffects[i] / nTags : 0;
+			avgEffects[i] = avgEffect;
+			//average effect per support
+			avgConfs[i] = avgSup > 0 ? avgEffect / avgSup : avgEffect;
+		}
+		return avgSup;
+	}
+
+	/**
+	 * Estimation kernel of the table. 
+	 * It sums the values of the content tags in a single traversal, then calculates 
+	 * the confidence of the content for each relation type.
+	 * Average values are used for the tags not in the tag table.
+	 * 
+	 * @param tagList ids of the tags of the content
+	 * @param avgSup average support of the tags
+	 * @param avgEffects average effects of the tags, indexed by relation type id
+	 * @param confValues array that the confidences of the content are written to, indexed by relation type id
+	 */
+	protected void calculateConfidences(int[] tagList, double avgSup, double[] avgEffects, double[] confValues){
+		final double[] effectVal = effectBuffer;
+		Arrays.fill(effectVal, 0);
+		double supVal = 0;
+		int nNotFound = 0;
+		for(int tag : tagList) {
+			int index = tagIndex.get(tag);
+			if(index != IntIndex.NOT_FOUND) {
+				supVal += supportValues[index];
+				int row = index * nRelTypes;
+				for(int i = 0; i < nRelTypes; i++){
+					effectVal[i] += rValues[row + i];
+				}
 			}
-			else if(confValue > avgConf){
-				estimations[i] = SharingDecision.PERMIT.getId();
+			else {
+				nNotFound += 1;
 			}
-			else{
-				estimations[i] = SharingDecision.DENY.getId();
+		}
+		fillConfidences(effectVal, supVal, nNotFound, avgSup, avgEffects, confValues);
+	}
+
+	/**
+	 * Calculates the confidences of a content from the summed values of its tags
+	 * @param effectVal summed effects of the tags in the table, indexed by relation type id
+	 * @param supVal summed support of the tags in the table
+	 * @param nNotFound number of tags not in the table
+	 * @param avgSup average support of the tags
+	 * @param avgEffects average effects of the tags, indexed by relation type id
+	 * @param confValues array that the confidences of the content are written to, indexed by relation type id
+	 */
+	protected final void fillConfidences(double[] effectVal, double supVal, int nNotFound, 
+			double avgSup, double[] avgEffects, double[] confValues) {
+		for(int i = 0; i < nRelTypes; i++){
+			double confValue = 0;
+			if(avgSup > 0) {
+				confValue = (effectVal[i] + avgEffects[i] * nNotFound) / (supVal + avgSup * nNotFound);
 			}
+			confValues[i] = confValue;
 		}
-		return estimations;
 	}
 
+	/**
+	 * Compares the confidence of a content with the average confidence of a table.
+	 * If the confidence is within the threshold of the average, the content is internally undecidable.
+	 * @param confValue confidence of the content for a relation type
+	 * @param avgConf average confidence of the table for the same relation type
+	 * @param threshold internal threshold, 0 if external estimation is disabled
+	 * @return estimated sharing decision or {@link Utils#INTERNALLY_UNDECIDABLE_STATE}
+	 */
+	public static int decide(double confValue, double avgConf, double threshold) {
+		//This part is for internally undecidable state
+		if(threshold != 0 && (confValue >= avgConf - threshold)
+				&& (confValue <= avgConf + threshold)){
+			return Utils.INTERNALLY_UNDECIDABLE_STATE;
+		}
+		else if(confValue > avgConf){
+			return SharingDecision.PERMIT.getId();
+		}
+		return SharingDecision.DENY.getId();
+	}
+
+	/**
+	 * Finds the smallest threshold at which {@link #decide(double, double, double)} finds a content 
+	 * internally undecidable, so the content is undecidable if and only if the threshold is not less than the margin.
+	 * The margin is the distance of the confidence from the average, moved by the rounding of 
+	 * {@code avgConf - threshold} and {@code avgConf + threshold} if it has to be.
+	 * Threshold 0 disables the undecidable state, so the margin is always positive.
+	 * @param confValue confidence of the content for a relation type
+	 * @param avgConf average confidence of the table for the same relation type
+	 * @return margin of the content, {@link Double#MIN_VALUE} if the confidence is equal to the average
+	 */
+	public static double getMargin(double confValue, double avgConf) {
+		double margin = Math.abs(confValue - avgConf);
+		if(Double.isNaN(margin)) {
+			return margin;
+		}
+		while(decide(confValue, avgConf, margin) != Utils.INTERNALLY_UNDECIDABLE_STATE) {
+			margin = Math.nextUp(margin);
+		}
+		//undecidable state is monotone in the threshold, and so are the bits of positive doubles
+		long decidable = 0;
+		long undecidable = Double.doubleToLongBits(margin);
+		while(undecidable - decidable > 1) {
+			long mid = (decidable + undecidable) >>> 1;
+			if(decide(confValue, avgConf, Double.longBitsToDouble(mid)) == Utils.INTERNALLY_UNDECIDABLE_STATE) {
+				undecidable = mid;
+			}
+			else {
+				decidable = mid;
+			}
+		}
+		return Double.longBitsToDouble(undecidable);
+	}
 
 	/**
 	 * Calculates average support value of the tags
@@ -99,12 +495,8 @@ public class TagTable {
 	 */
 	protected double getAverageSupport(){
 		double avgSupport = 0;
-		if(supportValues.size() > 0){
-			double total = 0;
-			for(int i = 0; i < tags.size(); i++){
-				total += supportValues.get(i);
-			}
-			avgSupport = total / tags.size();
+		if(totalSupport > 0){
+			avgSupport = totalSupport / size();
 		}
 		return avgSupport;
 	}
@@ -115,88 +507,168 @@ public class TagTable {
 	 */
 	public double[] getAverageEffects(){
 		double[] avg = new double[RelationType.values().length];
-		if(tags.size() > 0){
-			for(int i = 0; i < tags.size(); i++){
-				for (int j = 0; j < avg.length; j++) {
-					avg[j] += rValues.get(i)[j];
-				}
-			}
+		if(size() > 0){
 			for (int j = 0; j < avg.length; j++) {
-				avg[j] /= tags.size();
+				avg[j] = totalEffects[j] / scale / size();
 			}
 		}
 		return avg;
 	}
 
 	/**
-	 * Calculates observed privacy value for each relation type.
-	 * That is the average effect per support value of each relation type.
-	 * @return aobserved privacy values in the order of relation types
+	 * Returns the number of occurrences of the tag
+	 * @param tag tag name
+	 * @return the number of occurrences of the tag
 	 */
-	protected double[] getAverageConfidence() {
-		double avgSup = getAverageSupport();
-		double[] avgConf = getAverageEffects();
-		if(avgSup > 0) {
-			for (int i = 0; i < avgConf.length; i++) {
-				avgConf[i] /= avgSup; //average effect per support
-			}
+	public double getSupportOfTag(String tag){
+		int tagId = context.getTagDictionary().getId(tag);
+		if(tagId == TagDictionary.UNKNOWN_TAG) {
+			return 0;
 		}
-		return avgConf;
+		return getSupportOfTag(tagId);
 	}
 
 	/**
-	 * Calculates privacy value indicator for each relation type.
-	 * @param tagList tags of the content
-	 * @return privacy values in the order of relationship types
+	 * Returns the number of occurrences of the tag
+	 * @param tag tag id
+	 * @return the number of occurrences of the tag
 	 */
-	protected double[] calculateConfidence(List<String> tagList){
-		double[] effectVal = new double[RelationType.values().length];
-		double supVal = 0;
-		int nNotFound = 0;
-		double avgSup = getAverageSupport();
-		double[] avgEffects = getAverageEffects();
-
-		for(String str : tagList) {
-			//if the tag is in the tag table
-			if(tags.contains(str)) {
-				int index = tags.indexOf(str);
-				supVal += supportValues.get(index);
-				double[] rebacValues = rValues.get(index);
-				for(int i = 0; i < RelationType.values().length; i++){
-					effectVal[i] += rebacValues[i];
-				}
-			}
-			// tag is not in the tag table
-			else {
-				nNotFound += 1;
+	public double getSupportOfTag(int tag){
+		double support = 0;
+		int index = indexOf(tag);
+		if(index != IntIndex.NOT_FOUND){
+			support = supportValues[index] / scale;
+		}
+		return support;
+	}
+
+	/**
+	 * Returns the position of the tag in the table
+	 * @param tag tag id
+	 * @return position of the tag, {@link IntIndex#NOT_FOUND} if the tag is not in the table
+	 */
+	protected int indexOf(int tag) {
+		return tagIndex.get(tag);
+	}
+
+	/**
+	 * Appends a new tag to the table and indexes its position
+	 * @param tag tag id that is not in the table yet
+	 * @return position of the new tag
+	 */
+	protected int addTag(int tag) {
+		int position = size;
+		ensureCapacity(position + 1);
+		tagIndex.put(tag, position);
+		size++;
+		return position;
+	}
+
+	/**
+	 * Returns the number of tags in the table
+	 * @return the number of tags in the table
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of tags the table can store before its columns grow
+	 * @return the capacity of the table
+	 */
+	public int getCapacity() {
+		return supportValues.length;
+	}
+
+	/**
+	 * Grows the columns of the table by {@link #GROWTH_FACTOR} 
+	 * until they can store the given number of tags
+	 * @param minCapacity required number of tags
+	 */
+	public void ensureCapacity(int minCapacity) {
+		int capacity = getCapacity();
+		if(minCapacity > capacity) {
+			while(capacity < minCapacity) {
+				capacity = Math.max(capacity + 1, (int) (capacity * GROWTH_FACTOR));
 			}
+			resize(Math.max(MIN_CAPACITY, capacity));
 		}
-		double[] confidence = new double[RelationType.values().length];
-		if(avgSup > 0) {
-			//iterate over relationship types
-			for (int i = 0; i < RelationType.values().length; i++) {
-				/* calculates confidence value for the relationship type 
-				 * average values are used for the tags not in the tag table
-				 */
-				confidence[i] = (effectVal[i] + avgEffects[i] * nNotFound) / 
-						(supVal + avgSup * nNotFound); 
+	}
+
+	/**
+	 * Releases the unused capacity of the columns and the index, 
+	 * so that the table only holds the tags it has observed
+	 */
+	public void trimToSize() {
+		if(size < getCapacity()) {
+			resize(size);
+		}
+		tagIndex.trimToSize();
+	}
+
+	/**
+	 * Returns the ids of the tags in the order of their positions in the table
+	 * @return ids of the tags in the table
+	 */
+	public int[] getTagIds() {
+		return tagIndex.getKeysBySlot();
+	}
+
+	/**
+	 * Writes the learned values of the table in binary form.
+	 * Tags are written as ids of the {@link TagDictionary} of the context.
+	 * @param out output stream
+	 * @throws IOException if the stream can not be written
+	 */
+	public void writeTo(DataOutputStream out) throws IOException {
+		//values are written in the scale of one
+		out.writeInt(size);
+		out.writeDouble(totalSupport / scale);
+		for (int i = 0; i < nRelTypes; i++) {
+			out.writeDouble(totalEffects[i] / scale);
+		}
+		int[] tagIds = getTagIds();
+		for (int p = 0; p < size; p++) {
+			out.writeInt(tagIds[p]);
+			out.writeDouble(supportValues[p] / scale);
+			for (int i = 0; i < nRelTypes; i++) {
+				out.writeDouble(rValues[p * nRelTypes + i] / scale);
 			}
 		}
-		return confidence;
 	}
 
 	/**
-	 * Returns the number of occurrences of the tag
-	 * @param tag tag
-	 * @return the number of occurrences of the tag
+	 * Reads the values written by {@link #writeTo(DataOutputStream)} into an empty table
+	 * @param in buffer positioned at the beginning of the table
+	 * @param tagIdMap maps the tag ids in the buffer to the ids of the shared dictionary
 	 */
-	public double getSupportOfTag(String tag){
-		double support = 0;
-		if(tags.contains(tag)){
-			int index = tags.indexOf(tag);
-			support = supportValues.get(index);
+	public void readFrom(ByteBuffer in, int[] tagIdMap) {
+		if(size > 0) {
+			throw new IllegalStateException("Tag table must be empty to be read");
 		}
-		return support;
+		int n = in.getInt();
+		ensureCapacity(n);
+		totalSupport = in.getDouble();
+		for (int i = 0; i < nRelTypes; i++) {
+			totalEffects[i] = in.getDouble();
+		}
+		for (int p = 0; p < n; p++) {
+			int index = addTag(tagIdMap[in.getInt()]);
+			supportValues[index] = in.getDouble();
+			for (int i = 0; i < nRelTypes; i++) {
+				rValues[index * nRelTypes + i] = in.getDouble();
+			}
+		}
+	}
+
+	/**
+	 * Copies the columns of the table into arrays of the given capacity.
+	 * Subclasses storing additional columns extend this method.
+	 * @param capacity new capacity of the table
+	 */
+	protected void resize(int capacity) {
+		supportValues = Arrays.copyOf(supportValues, capacity);
+		rValues = Arrays.copyOf(rValues, capacity * nRelTypes);
 	}
 
 	@Override
@@ -206,26 +678,28 @@ public class TagTable {
 		RelationType[] rTypes = RelationType.values();
 		double totalSupport = 0;
 		double[] totalEffect = new double[rTypes.length];
+		TagDictionary dictionary = context.getTagDictionary();
+		int[] tags = getTagIds();
 		DecimalFormat df = new DecimalFormat();
 		df.setMaximumFractionDigits(2);
 		for (int i = 0; i < rTypes.length; i++) {
 			sb.append(rTypes[i] + " ");
 		}
 		sb.append("\n");
-		for(int i = 0; i < tags.size(); i++){
-			sb.append(tags.get(i) + ", " + supportValues.get(i));
+		for(int i = 0; i < size(); i++){
+			sb.append(dictionary.getTag(tags[i]) + ", " + supportValues[i] / scale);
 			for (int j = 0; j < rTypes.length; j++) {
-				sb.append(", " + rValues.get(i)[j]);
-				totalEffect[j] += rValues.get(i)[j];
+				sb.append(", " + rValues[i * nRelTypes + j] / scale);
+				totalEffect[j] += rValues[i * nRelTypes + j] / scale;
 			}
 			sb.append("\n");
-			totalSupport += supportValues.get(i);
+			totalSupport += supportValues[i] / scale;
 		}	
 		sb.append("Average, " + df.format(totalSupport / 
-				tags.size()).replace(",", "."));
+				size()).replace(",", "."));
 		for (int i = 0; i < rTypes.length; i++) {
 			sb.append(", " + df.format(totalEffect[i] / 
-					tags.size()).replace(",", "."));
+					size()).replace(",", "."));
 		}
 		sb.append("\n");
 		return sb.toString();
@@ -0,0 +1,207 @@
+package model.privacy;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import model.network.RelationType;
+import utils.Utils;
+
+/**
+ * Trust table stores the statistical information of the image sharing experience
+ * of an agent with each of its neighbours and the trust values calculated from it.
+ * Neighbours are stored at positions given in the order they are added, which is the order 
+ * of the relations of the agent in {@link model.network.RelationGraph}, so the position of a neighbour 
+ * is known from the relation without a search.
+ * Their stats and trust values are kept in primitive columns, row by row.
+ * Trust values are cached and only recalculated when the stats of a neighbour change.
+ *
+ * @author cankurtan
+ *
+ */
+public class TrustTable {
+
+	/**
+	 * Trust value of a relation type before any experience
+	 */
+	//TODO Why 0.5 instead of 1?
+	public static final double INITIAL_TRUST = 0.5;
+	/**
+	 * Smallest capacity the columns grow to
+	 */
+	private static final int MIN_CAPACITY = 4;
+
+	/**
+	 * Number of relation types, which is the width of a row
+	 */
+	private final int nRelTypes = RelationType.values().length;
+	/**
+	 * Agent ids of the neighbours in the order of their positions
+	 */
+	private int[] agentIds = new int[0];
+	/**
+	 * Number of images the neighbour shared with the same decision (the agent agrees),
+	 * the count of the neighbour at position p for relation type i is at p * nRelTypes + i
+	 */
+	private int[] agreed = new int[0];
+	/**
+	 * Number of images the neighbour shared with a different decision (the agent disagrees)
+	 */
+	private int[] disagreed = new int[0];
+	/**
+	 * Cached trust values calculated from the stats
+	 */
+	private double[] values = new double[0];
+	/**
+	 * Number of neighbours
+	 */
+	private int size = 0;
+
+	/**
+	 * Returns an independent copy of the table
+	 * @return copy of the table
+	 */
+	public TrustTable copy() {
+		TrustTable copy = new TrustTable();
+		copy.agentIds = agentIds.clone();
+		copy.agreed = agreed.clone();
+		copy.disagreed = disagreed.clone();
+		copy.values = values.clone();
+		copy.size = size;
+		return copy;
+	}
+
+	/**
+	 * Adds a neighbour to the table at the next position
+	 * @param agentId id of the neighbour
+	 * @return position of the neighbour
+	 */
+	public int addNeighbour(int agentId) {
+		int position = size;
+		if(position == agentIds.length) {
+			resize(Math.max(MIN_CAPACITY, 2 * position));
+		}
+		agentIds[position] = agentId;
+		Arrays.fill(values, position * nRelTypes, (position + 1) * nRelTypes, INITIAL_TRUST);
+		size++;
+		return position;
+	}
+
+	/**
+	 * Updates the image stats by comparing the sharing decisions of the content owner and
+	 * the possible sharing actions of the trust owner, for each relation type.
+	 * Internally undecidable actions of the trust owner are not counted.
+	 * @param position position of the content owner
+	 * @param trustOwnerAction trust owner's most probable actions for the image
+	 * @param imageOwnerAction actual sharing actions defined by the image owner
+	 */
+	public void update(int position, int[] trustOwnerAction, int[] imageOwnerAction) {
+		int row = position * nRelTypes;
+		for(int i = 0; i < trustOwnerAction.length; i++){
+			if(trustOwnerAction[i] == imageOwnerAction[i]){
+				agreed[row + i]++;
+			}
+			else if(trustOwnerAction[i] != Utils.INTERNALLY_UNDECIDABLE_STATE){
+				disagreed[row + i]++;
+			}
+			else {
+				//TODO In the case of internally undecidable state, there should be another operation.
+				continue;
+			}
+			values[row + i] = 1.0 * agreed[row + i] / (agreed[row + i] + disagreed[row + i]);
+		}
+	}
+
+	/**
+	 * Returns the trust values of all the neighbours,
+	 * the value for the neighbour at position p and relation type i is at p * nRelTypes + i.
+	 * The array is owned by the table and must not be modified.
+	 * @return cached trust values
+	 */
+	public double[] getValues() {
+		return values;
+	}
+
+	/**
+	 * Returns the trust value towards a neighbour for a relation type
+	 * @param position position of the neighbour
+	 * @param rTypeId id of the relation type
+	 * @return trust value
+	 */
+	public double getValue(int position, int rTypeId) {
+		return values[position * nRelTypes + rTypeId];
+	}
+
+	/**
+	 * Returns the agent id of the neighbour at the given position
+	 * @param position position of the neighbour
+	 * @return agent id
+	 */
+	public int getAgentId(int position) {
+		return agentIds[position];
+	}
+
+	/**
+	 * Returns the number of neighbours
+	 * @return the number of neighbours
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Writes the neighbours and their image stats in binary form
+	 * @param out output stream
+	 * @throws IOException if the stream can not be written
+	 */
+	public void writeTo(DataOutputStream out) throws IOException {
+		out.writeInt(size);
+		for (int p = 0; p < size; p++) {
+			out.writeInt(agentIds[p]);
+			for (int i = 0; i < nRelTypes; i++) {
+				out.writeInt(agreed[p * nRelTypes + i]);
+			}
+			for (int i = 0; i < nRelTypes; i++) {
+				out.writeInt(disagreed[p * nRelTypes + i]);
+			}
+		}
+	}
+
+	/**
+	 * Reads the image stats written by {@link #writeTo(DataOutputStream)}.
+	 * The table must have the same neighbours at the same positions as the written one.
+	 * @param in buffer positioned at the beginning of the table
+	 * @throws IllegalStateException if the neighbours are different
+	 */
+	public void readFrom(ByteBuffer in) {
+		int n = in.getInt();
+		if(n != size) {
+			throw new IllegalStateException("Trust table was saved with " + n + " neighbours instead of " + size);
+		}
+		for (int p = 0; p < n; p++) {
+			if(in.getInt() != agentIds[p]) {
+				throw new IllegalStateException("Trust table was saved with different neighbours");
+			}
+			int row = p * nRelTypes;
+			for (int i = 0; i < nRelTypes; i++) {
+				agreed[row + i] = in.getInt();
+			}
+			for (int i = 0; i < nRelTypes; i++) {
+				disagreed[row + i] = in.getInt();
+			}
+			for (int i = 0; i < nRelTypes; i++) {
+				int total = agreed[row + i] + disagreed[row + i];
+				values[row + i] = total > 0 ? 1.0 * agreed[row + i] / total : INITIAL_TRUST;
+			}
+		}
+	}
+
+	private void resize(int capacity) {
+		agentIds = Arrays.copyOf(agentIds, capacity);
+		agreed = Arrays.copyOf(agreed, capacity * nRelTypes);
+		disagreed = Arrays.copyOf(disagreed, capacity * nRelTypes);
+		values = Arrays.copyOf(values, capacity * nRelTypes);
+	}
+
+}
@@ -0,0 +1,192 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash index that maps non-negative int keys to their slots in a table, 
+ * e.g. tag ids to the positions of the tags in a tag table 
+ * or the ids of the agents in a data set to their dense ids.
+ * Slots are assigned by the owner of the index, usually in the insertion order of the keys,
+ * so the index only has to answer where a key is stored.
+ * Collisions are resolved by linear probing.
+ * @author cankurtan
+ *
+ */
+public class IntIndex {
+
+	/**
+	 * Returned for the keys that are not indexed
+	 */
+	public static final int NOT_FOUND = -1;
+	/**
+	 * Marks the empty cells, keys are never negative
+	 */
+	private static final int EMPTY = -1;
+	/**
+	 * Number of cells allocated for the first key, must be a power of two
+	 */
+	private static final int INITIAL_CAPACITY = 8;
+	/**
+	 * Cells of an index that does not have any key
+	 */
+	private static final int[] NO_CELLS = new int[0];
+
+	/**
+	 * Keys stored in the cells
+	 */
+	private int[] keys;
+	/**
+	 * Slots of the keys stored in the cells
+	 */
+	private int[] slots;
+	/**
+	 * Number of stored keys
+	 */
+	private int size;
+
+	/**
+	 * Empty constructor, the cells are allocated when the first key is indexed
+	 */
+	public IntIndex() {
+		keys = NO_CELLS;
+		slots = NO_CELLS;
+	}
+
+	/**
+	 * Copy constructor
+	 * @param other index to be copied
+	 */
+	private IntIndex(IntIndex other) {
+		keys = other.keys.length > 0 ? other.keys.clone() : NO_CELLS;
+		slots = other.slots.length > 0 ? other.slots.clone() : NO_CELLS;
+		size = other.size;
+	}
+
+	/**
+	 * Returns an independent copy of the index
+	 * @return copy of the index
+	 */
+	public IntIndex copy() {
+		return new IntIndex(this);
+	}
+
+	/**
+	 * Returns the slot of the given key
+	 * @param key non-negative key
+	 * @return slot of the key, {@link #NOT_FOUND} if the key is not indexed
+	 */
+	public int get(int key) {
+		if(size == 0) {
+			return NOT_FOUND;
+		}
+		int mask = keys.length - 1;
+		int cell = hash(key) & mask;
+		int stored;
+		while((stored = keys[cell]) != EMPTY) {
+			if(stored == key) {
+				return slots[cell];
+			}
+			cell = (cell + 1) & mask;
+		}
+		return NOT_FOUND;
+	}
+
+	/**
+	 * Indexes the key with the given slot.
+	 * The caller must ensure that the key is not indexed yet.
+	 * @param key non-negative key
+	 * @param slot slot of the key in the table
+	 */
+	public void put(int key, int slot) {
+		//keep the load factor at most one half so the probe sequences stay short
+		if(2 * (size + 1) > keys.length) {
+			rehash(Math.max(INITIAL_CAPACITY, 2 * keys.length));
+		}
+		insert(key, slot);
+		size++;
+	}
+
+	/**
+	 * Returns the number of indexed keys
+	 * @return the number of indexed keys
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes all the keys, keeping the allocated cells
+	 */
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+	}
+
+	/**
+	 * Returns the indexed keys in the order of their slots.
+	 * Slots are expected to be {@code 0 ... size() - 1}
+	 * @return keys ordered by slot
+	 */
+	public int[] getKeysBySlot() {
+		int[] ordered = new int[size];
+		for (int i = 0; i < keys.length; i++) {
+			if(keys[i] != EMPTY) {
+				ordered[slots[i]] = keys[i];
+			}
+		}
+		return ordered;
+	}
+
+	/**
+	 * Shrinks the cells to the smallest power of two that keeps the load factor at most one half
+	 */
+	public void trimToSize() {
+		int capacity = INITIAL_CAPACITY;
+		while(capacity < 2 * size) {
+			capacity *= 2;
+		}
+		if(size == 0) {
+			keys = NO_CELLS;
+			slots = NO_CELLS;
+		}
+		else if(capacity < keys.length) {
+			rehash(capacity);
+		}
+	}
+
+	private void insert(int key, int slot) {
+		int mask = keys.length - 1;
+		int cell = hash(key) & mask;
+		while(keys[cell] != EMPTY) {
+			cell = (cell + 1) & mask;
+		}
+		keys[cell] = key;
+		slots[cell] = slot;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		int[] oldSlots = slots;
+		keys = newKeys(capacity);
+		slots = new int[capacity];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if(oldKeys[i] != EMPTY) {
+				insert(oldKeys[i], oldSlots[i]);
+			}
+		}
+	}
+
+	private static int[] newKeys(int capacity) {
+		int[] cells = new int[capacity];
+		Arrays.fill(cells, EMPTY);
+		return cells;
+	}
+
+	/**
+	 * Scrambles the keys, which are often dense, since the cell is chosen by masking the lower bits
+	 */
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
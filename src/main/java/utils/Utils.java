@@ -3,65 +3,16 @@ package utils;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.SplittableRandom;
 
 public class Utils {
-	/**
-	 * A counter to produce agent id systematically
-	 */
-	private static int agentId = 0;
-	/**
-	 * A counter to produce content id systematically
-	 */
-	private static int contentId = 0;
-	/**
-	 * A counter to produce relation id systematically
-	 */
-	private static int relationId = 0;
-	private static double internalThreshold = 0;
-	private static boolean isPredictionActive = false;
-	private static boolean isLearningActive = false;
-	private static boolean isTrustBasedLearningActive = false;
-
-	private static Map<Long, Integer> falsePredictions = new HashMap<Long, Integer>();
 	private static List<String> forbiddenTags = new ArrayList<String>(
 			Arrays.asList("people","one","two","three","four","five"));
 	public static final int INTERNALLY_UNDECIDABLE_STATE = -1;
 	public static final int EXTERNALLY_UNDECIDABLE_STATE = -1;
 	public static final int STATS_SIZE = 4;
 
-	/**
-	 * 
-	 * @return unique agent id for the environment
-	 */
-	public static int getAgentId(){
-		agentId++;
-		return agentId;
-	}
-	/**
-	 * 
-	 * @return unique content id for the environment
-	 */
-	public static int getContentId(){
-		contentId++;
-		return contentId;
-	}
-	/**
-	 * 
-	 * @return unique relation id for the environment
-	 */
-	public static int getRelationId(){
-		relationId++;
-		return relationId;
-	}
-
-	public static String getInfo(){
-		return "agent number:" + agentId + " content number:" + contentId + 
-				" relation number:" + relationId;
-	}
 	/**
 	 * Checks whether a tag is in the forbidden list
 	 * @param tag string of content tag
@@ -71,6 +22,18 @@ public class Utils {
 		return forbiddenTags.contains(tag);
 	}
 
+	/**
+	 * Shuffles the list in the same way as {@link Collections#shuffle(List, java.util.Random)},
+	 * but with a splittable random stream
+	 * @param list list to be shuffled
+	 * @param random random stream of the simulation
+	 */
+	public static void shuffle(List<?> list, SplittableRandom random) {
+		for (int i = list.size() - 1; i > 0; i--) {
+			Collections.swap(list, i, random.nextInt(i + 1));
+		}
+	}
+
 	public static String formatFloat(float floatValue){
 		return String.format("%.2f", floatValue);
 	}
@@ -79,66 +42,6 @@ public class Utils {
 		return String.format("%.2f", value);
 	}
 
-	public static boolean isExternalEnabled() {
-		return internalThreshold != 0;
-	}
-
-	public static double getInternalThreshold() {
-		return internalThreshold;
-	}
-
-	public static void setInternalThreshold(double threshold) {
-		internalThreshold = threshold;
-	}
-
-	public static boolean isPredictionActive() {
-		return isPredictionActive;
-	}
-	public static void activatePrediction() {
-		Utils.isPredictionActive = true;
-	}
-	public static void deactivatePrediction(){
-		Utils.isPredictionActive = false;
-	}	
-	public static boolean isLearningActive() {
-		return isLearningActive;
-	}
-	public static void setLearningActive(boolean active) {
-		isLearningActive = active;
-	}
-
-	public static boolean isTrustBasedLearningActive() {
-		return isTrustBasedLearningActive;
-	}
-	
-	public static void activateTrustBasedLearning() {
-		isTrustBasedLearningActive = true;
-	}
-
-	public static void addFalsePredicted(Long id) {
-		if(falsePredictions.containsKey(id)){
-			falsePredictions.put(id, falsePredictions.get(id)+1);
-		}
-		else{
-			falsePredictions.put(id, 1);
-		}
-	}
-	
-	public static void printFalsePredictions(){
-		List<Long> fpList = new ArrayList<>(falsePredictions.keySet());
-
-		Collections.sort(fpList, new Comparator<Long>() {
-			@Override
-			public int compare(Long arg0, Long arg1) {
-				return falsePredictions.get(arg1)
-						.compareTo(falsePredictions.get(arg0));
-			}
-		});
-		for (int i = 0; i < fpList.size(); i++) {
-			System.out.println(fpList.get(i) + " " + falsePredictions.get(fpList.get(i)));
-		}
-	}
-
 	public static float[] sumArrays(float[] a, float[] b){
 		float[] sum = new float[a.length];
 		for (int i = 0; i < sum.length; i++) {
@@ -0,0 +1,73 @@
+package app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.experiment.ExperimentType;
+import model.privacy.SketchTagTable;
+
+/**
+ * Validation of the tag table options of the configuration.
+ * @author cankurtan
+ *
+ */
+public class ConfigurationTest {
+
+	private Configuration config;
+
+	@Before
+	public void setUp() {
+		config = new Configuration(ExperimentType.EXTERNAL, "features", "edges", "training", "", "tags", 
+				1, new int[] {100}, new int[] {100}, new double[] {0.01}, 0, 0, new int[] {0}, null, 0, 0, 0, 0, 
+				false, false, false, 1, 1, false);
+	}
+
+	@Test
+	public void testExactTablesAreValid() {
+		assertTrue(config.validate());
+		assertEquals(0, config.getSketchWidth());
+		assertEquals(SketchTagTable.DEFAULT_DEPTH, config.getSketchDepth());
+	}
+
+	@Test
+	public void testSketchWidthIsDerivedFromTheError() {
+		config.setSketchError(0.01);
+		assertTrue(config.validate());
+		assertEquals(SketchTagTable.widthForError(0.01), config.getSketchWidth());
+	}
+
+	@Test
+	public void testWidthAndErrorAreNotBothAccepted() {
+		config.setSketchWidth(512);
+		config.setSketchError(0.01);
+		assertFalse(config.validate());
+	}
+
+	@Test
+	public void testErrorOutOfRangeIsRejected() {
+		config.setSketchError(1);
+		assertFalse(config.validate());
+		config.setSketchError(-0.1);
+		assertFalse(config.validate());
+	}
+
+	@Test
+	public void testDepthOutOfRangeIsRejected() {
+		config.setSketchWidth(512);
+		config.setSketchDepth(SketchTagTable.MAX_DEPTH + 1);
+		assertFalse(config.validate());
+	}
+
+	@Test
+	public void testHalfLifeOfSketchesIsRejected() {
+		config.setTagHalfLife(100);
+		assertTrue(config.validate());
+		config.setSketchWidth(512);
+		assertFalse(config.validate());
+	}
+
+}
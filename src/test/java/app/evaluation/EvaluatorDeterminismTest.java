@@ -0,0 +1,112 @@
+package app.evaluation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import app.Configuration;
+import model.experiment.ExperimentStats;
+import model.experiment.ExperimentType;
+import model.experiment.Parameters;
+import model.loader.BulkContentLoader;
+import model.loader.TestData;
+import model.network.RelationType;
+
+/**
+ * Results of an experiment must depend only on its seed, not on the number of workers 
+ * that run its simulations or on the order the simulations finish in.
+ * @author cankurtan
+ *
+ */
+public class EvaluatorDeterminismTest {
+
+	private static final long SEED = 42;
+	private static final int N_SIMS = 4;
+
+	private TestData data;
+
+	@Before
+	public void setUp() throws IOException {
+		data = new TestData("determinism", 600);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		data.delete();
+		//the evaluator writes its results into the working directory
+		String suffix = "_determinism-ps_determinism-tags_results.csv";
+		File[] results = new File(".").listFiles((dir, name) -> name.endsWith(suffix));
+		if(results != null) {
+			for(File result : results) {
+				result.delete();
+			}
+		}
+	}
+
+	@Test
+	public void testWorkersDoNotChangeResults() {
+		List<String> sequential = evaluate(1, false);
+		List<String> parallel = evaluate(N_SIMS, false);
+		assertFalse(sequential.isEmpty());
+		assertEquals(sequential, parallel);
+	}
+
+	@Test
+	public void testWorkersDoNotChangeResultsWithCommonRandomNumbers() {
+		List<String> sequential = evaluate(1, true);
+		List<String> parallel = evaluate(N_SIMS, true);
+		assertFalse(sequential.isEmpty());
+		assertEquals(sequential, parallel);
+	}
+
+	/**
+	 * Runs the experiment and records the statistics of each cell in the order they are written
+	 * @param workers number of simulations that run in parallel
+	 * @param commonRandomNumbers true to use the same draws for the same simulation of every cell
+	 * @return parameters and confusion matrices of the cells
+	 */
+	private List<String> evaluate(int workers, boolean commonRandomNumbers) {
+		Configuration config = new Configuration(ExperimentType.EXTERNAL, TestData.FEATURES, TestData.EDGES, 
+				data.getPsFile(), "", data.getTagFile(), N_SIMS, new int[] {200, 300}, new int[] {200}, 
+				new double[] {0, 0.05}, 0, 0, new int[] {0}, null, 0, 0, 0, 0, 
+				false, false, false, workers, SEED, commonRandomNumbers);
+		BulkContentLoader loader = new BulkContentLoader(null, config.getTagFile(), config.getTrainingFile());
+		RecordingEvaluator evaluator = new RecordingEvaluator(config, loader);
+		evaluator.evaluate();
+		return evaluator.cells;
+	}
+
+	/**
+	 * Evaluator that keeps the statistics of the cells besides writing them
+	 */
+	private static class RecordingEvaluator extends Evaluator {
+
+		private final List<String> cells = new ArrayList<>();
+
+		RecordingEvaluator(Configuration simConfig, BulkContentLoader cLoader) {
+			super(simConfig, cLoader);
+		}
+
+		@Override
+		protected void writeLineToCSV(Parameters param, ExperimentStats iStats, ExperimentStats eStats) {
+			super.writeLineToCSV(param, iStats, eStats);
+			StringBuilder cell = new StringBuilder(param.getAsList().toString());
+			for(RelationType rType : RelationType.values()) {
+				cell.append(' ').append(rType)
+					.append(Arrays.deepToString(iStats.getStats(rType).getConfusion()))
+					.append(Arrays.deepToString(eStats.getStats(rType).getConfusion()));
+			}
+			cells.add(cell.toString());
+		}
+	}
+
+}
@@ -0,0 +1,146 @@
+package model.experiment;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import model.network.RelationType;
+import model.privacy.SharingDecision;
+import model.privacy.TagTable;
+import utils.Utils;
+
+/**
+ * Every point of a threshold curve must be the result that {@link TagTable#decide(double, double, double)}
+ * gives for its threshold, which {@link ThresholdSweep} scores directly.
+ * @author cankurtan
+ *
+ */
+public class ThresholdCurveTest {
+
+	private static final RelationType R_TYPE = RelationType.values()[0];
+	private static final int N_DECISION = SharingDecision.values().length;
+
+	@Test
+	public void testMarginIsTheSmallestUndecidableThreshold() {
+		Random random = new Random(11);
+		for (int i = 0; i < 10000; i++) {
+			double avgConf = random.nextDouble();
+			double confValue = i % 2 == 0 ? random.nextDouble() : avgConf + 0.1 * (random.nextInt(5) - 2);
+			assertSmallestUndecidable(confValue, avgConf);
+		}
+		//differences of one ulp round into the average
+		for(double avgConf : new double[] {0.75, 1000, 3e10}) {
+			assertSmallestUndecidable(Math.nextUp(avgConf), avgConf);
+			assertSmallestUndecidable(Math.nextDown(avgConf), avgConf);
+		}
+	}
+
+	@Test
+	public void testConfidenceEqualToTheAverage() {
+		assertEquals(Double.MIN_VALUE, TagTable.getMargin(0.5, 0.5), 0);
+		assertEquals(Double.MIN_VALUE, TagTable.getMargin(0, 0), 0);
+	}
+
+	@Test
+	public void testPointsAgreeWithTheSweep() {
+		Random random = new Random(13);
+		int n = 5000;
+		double[] confValues = new double[n];
+		double[] avgConfs = new double[n];
+		List<Double> thresholds = new ArrayList<>(Arrays.asList(0.0, 0.01, 0.05, 0.1, 0.2));
+		for (int i = 0; i < n; i++) {
+			avgConfs[i] = random.nextDouble();
+			//every fifth confidence is equal to the average, every third is a round distance away
+			confValues[i] = i % 5 == 0 ? avgConfs[i] 
+					: i % 3 == 0 ? avgConfs[i] + 0.1 * (random.nextInt(5) - 2) : random.nextDouble();
+			if(i % 50 == 0) {
+				double margin = TagTable.getMargin(confValues[i], avgConfs[i]);
+				thresholds.add(margin);
+				thresholds.add(Math.nextDown(margin));
+				thresholds.add(Math.abs(confValues[i] - avgConfs[i]));
+			}
+		}
+		double[] sweepThresholds = thresholds.stream().mapToDouble(Double::doubleValue).toArray();
+		ThresholdCurve curve = new ThresholdCurve(N_DECISION);
+		ThresholdSweep sweep = new ThresholdSweep(sweepThresholds, Arrays.asList(RelationType.values()), N_DECISION);
+		for (int i = 0; i < n; i++) {
+			int decision = random.nextInt(N_DECISION);
+			int external = random.nextInt(N_DECISION + 1) - 1;
+			curve.record(R_TYPE, decision, confValues[i], avgConfs[i], external);
+			sweep.record(R_TYPE, decision, confValues[i], avgConfs[i], external);
+		}
+		List<ThresholdCurve.Point> points = curve.getPoints(R_TYPE);
+		for (int t = 0; t < sweepThresholds.length; t++) {
+			Stats expected = new Stats(N_DECISION);
+			expected.addConfusion(sweep.getInternalStats(t).get(R_TYPE).getConfusion());
+			expected.addConfusion(sweep.getExternalStats(t).get(R_TYPE).getConfusion());
+			ThresholdCurve.Point point = ThresholdCurve.getPoint(points, sweepThresholds[t]);
+			assertEquals("threshold " + sweepThresholds[t], 
+					Arrays.deepToString(expected.getConfusion()), Arrays.deepToString(point.getStats().getConfusion()));
+		}
+	}
+
+	@Test
+	public void testPointsAreOrderedByThreshold() {
+		ThresholdCurve curve = new ThresholdCurve(N_DECISION);
+		curve.record(R_TYPE, 1, 0.9, 0.5, Utils.EXTERNALLY_UNDECIDABLE_STATE);
+		curve.record(R_TYPE, 0, 0.2, 0.5, 0);
+		curve.record(R_TYPE, 1, 0.7, 0.5, 1);
+		curve.record(R_TYPE, 0, 0.5, 0.5, 0);
+		List<ThresholdCurve.Point> points = curve.getPoints(R_TYPE);
+		assertEquals(5, points.size());
+		assertEquals(0, points.get(0).getThreshold(), 0);
+		assertEquals(1, points.get(0).getInternalRatio(), 0);
+		for (int p = 1; p < points.size(); p++) {
+			assertTrue(points.get(p).getThreshold() > points.get(p - 1).getThreshold());
+			assertTrue(points.get(p).getInternalRatio() < points.get(p - 1).getInternalRatio());
+		}
+		assertEquals(0, points.get(points.size() - 1).getInternalRatio(), 0);
+		//content that is undecidable for both is not counted
+		assertArrayEquals(new int[] {2, 0}, points.get(points.size() - 1).getStats().getConfusion()[0]);
+		assertArrayEquals(new int[] {0, 1}, points.get(points.size() - 1).getStats().getConfusion()[1]);
+	}
+
+	@Test
+	public void testAddCurve() {
+		ThresholdCurve first = new ThresholdCurve(N_DECISION);
+		ThresholdCurve second = new ThresholdCurve(N_DECISION);
+		ThresholdCurve all = new ThresholdCurve(N_DECISION);
+		Random random = new Random(17);
+		for (int i = 0; i < 200; i++) {
+			int decision = random.nextInt(N_DECISION);
+			double confValue = random.nextDouble();
+			(i % 2 == 0 ? first : second).record(R_TYPE, decision, confValue, 0.5, 1 - decision);
+			all.record(R_TYPE, decision, confValue, 0.5, 1 - decision);
+		}
+		first.addCurve(second);
+		assertEquals(all.size(R_TYPE), first.size(R_TYPE));
+		List<ThresholdCurve.Point> expected = all.getPoints(R_TYPE);
+		List<ThresholdCurve.Point> actual = first.getPoints(R_TYPE);
+		assertEquals(expected.size(), actual.size());
+		for (int p = 0; p < expected.size(); p++) {
+			assertEquals(expected.get(p).getThreshold(), actual.get(p).getThreshold(), 0);
+			assertEquals(Arrays.deepToString(expected.get(p).getStats().getConfusion()), 
+					Arrays.deepToString(actual.get(p).getStats().getConfusion()));
+		}
+		assertEquals(ThresholdCurve.getBest(expected).getThreshold(), ThresholdCurve.getBest(actual).getThreshold(), 0);
+	}
+
+	private static void assertSmallestUndecidable(double confValue, double avgConf) {
+		double margin = TagTable.getMargin(confValue, avgConf);
+		assertTrue(margin > 0);
+		assertEquals(Utils.INTERNALLY_UNDECIDABLE_STATE, TagTable.decide(confValue, avgConf, margin));
+		double below = Math.nextDown(margin);
+		if(below > 0) {
+			assertTrue(TagTable.decide(confValue, avgConf, below) != Utils.INTERNALLY_UNDECIDABLE_STATE);
+		}
+	}
+
+}
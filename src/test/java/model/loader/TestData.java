@@ -0,0 +1,103 @@
+package model.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Writes a small data set for the tests, which is drawn from a fixed seed.
+ * Contents of the data set are shared by the agents of the SNAP network in the resources.
+ * Some tags are mostly seen on private contents, some on public contents and the rest on both,
+ * so that the tag tables have something to learn.
+ * @author cankurtan
+ *
+ */
+public class TestData {
+
+	/**
+	 * Features of the agents in the SNAP network
+	 */
+	public static final String FEATURES = "src/main/resources/3980.feat";
+	/**
+	 * Relations of the agents in the SNAP network
+	 */
+	public static final String EDGES = "src/main/resources/3980.edges";
+
+	private static final int N_TAGS = 30;
+	private static final int TAGS_PER_CONTENT = 6;
+
+	private final File dir;
+	private final File tagFile;
+	private final File psFile;
+
+	/**
+	 * Writes the tag and the privacy setting files of the contents into a new temporary directory
+	 * @param name prefix of the file names
+	 * @param nContents number of contents
+	 * @throws IOException if the files can not be written
+	 */
+	public TestData(String name, int nContents) throws IOException {
+		this.dir = Files.createTempDirectory(name).toFile();
+		this.tagFile = new File(dir, name + "-tags.csv");
+		this.psFile = new File(dir, name + "-ps.csv");
+		Random random = new Random(7);
+		try(PrintWriter tags = new PrintWriter(tagFile); PrintWriter settings = new PrintWriter(psFile)) {
+			for (int i = 0; i < nContents; i++) {
+				long id = 1000000L + i;
+				boolean isPrivate = random.nextBoolean();
+				StringBuilder line = new StringBuilder(Long.toString(id));
+				boolean[] added = new boolean[N_TAGS];
+				for (int j = 0; j < TAGS_PER_CONTENT; j++) {
+					//first third of the tags leans to private, second third to public
+					int tag = random.nextInt(N_TAGS / 3);
+					if(random.nextDouble() < 0.3) {
+						tag += 2 * N_TAGS / 3;
+					}
+					else if(!isPrivate) {
+						tag += N_TAGS / 3;
+					}
+					if(!added[tag]) {
+						added[tag] = true;
+						line.append(",t").append(tag);
+					}
+				}
+				tags.println(line);
+				settings.println(id + "," + (isPrivate ? "private" : "public"));
+			}
+		}
+	}
+
+	public String getTagFile() {
+		return tagFile.getPath();
+	}
+
+	public String getPsFile() {
+		return psFile.getPath();
+	}
+
+	/**
+	 * Returns the temporary directory of the files
+	 * @return directory of the data set
+	 */
+	public File getDir() {
+		return dir;
+	}
+
+	/**
+	 * Deletes the temporary directory with everything in it
+	 * @throws IOException if a file can not be deleted
+	 */
+	public void delete() throws IOException {
+		try(Stream<Path> paths = Files.walk(dir.toPath())) {
+			for(Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(path);
+			}
+		}
+	}
+
+}
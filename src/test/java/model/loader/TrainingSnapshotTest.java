@@ -0,0 +1,139 @@
+package model.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.experiment.Parameters;
+import model.experiment.SimulationContext;
+import model.network.Agent;
+import model.network.Content;
+import model.network.ExternalEnvironment;
+import model.network.RelationType;
+import model.network.TagDictionary;
+
+/**
+ * A snapshot must restore the trained state of every agent and the order of the drawn contents.
+ * @author cankurtan
+ *
+ */
+public class TrainingSnapshotTest {
+
+	private TestData data;
+	private BulkContentLoader loader;
+	private ExternalEnvironment trained;
+	private File snapshot;
+
+	@Before
+	public void setUp() throws IOException {
+		data = new TestData("snapshot", 400);
+		loader = new BulkContentLoader(null, data.getTagFile(), data.getPsFile());
+		Parameters param = new Parameters();
+		param.training = 300;
+		param.test = 100;
+		param.nTags = 0;
+		param.threshold = 0.05;
+		trained = createEnvironment(loader.getTagDictionary());
+		loader.loadTrainingData(trained, param);
+		snapshot = new File(data.getDir(), "training.snap");
+		TrainingSnapshot.save(snapshot, trained, loader.getContents());
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		data.delete();
+	}
+
+	@Test
+	public void testLoadRestoresTheTrainedState() throws IOException {
+		ExternalEnvironment restored = createEnvironment(loader.getTagDictionary());
+		List<Long> order = TrainingSnapshot.load(snapshot, restored);
+		assertEquals(getContentIds(loader.getContents()), order);
+		assertSameState(trained, restored);
+	}
+
+	@Test
+	public void testLoadMapsTheTagsToAnotherDictionary() throws IOException {
+		TagDictionary dictionary = new TagDictionary();
+		//shifts the ids of all the saved tags
+		dictionary.intern("unseen");
+		ExternalEnvironment restored = createEnvironment(dictionary);
+		TrainingSnapshot.load(snapshot, restored);
+		assertEquals(loader.getTagDictionary().size() + 1, dictionary.size());
+		assertSameState(trained, restored);
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncatedSnapshotIsRejected() throws IOException {
+		try(RandomAccessFile file = new RandomAccessFile(snapshot, "rw")) {
+			file.setLength(file.length() / 2);
+		}
+		TrainingSnapshot.load(snapshot, createEnvironment(loader.getTagDictionary()));
+	}
+
+	@Test(expected = IOException.class)
+	public void testOtherFileIsRejected() throws IOException {
+		TrainingSnapshot.load(new File(data.getTagFile()), createEnvironment(loader.getTagDictionary()));
+	}
+
+	@Test
+	public void testSaveReplacesTheSnapshot() throws IOException {
+		TrainingSnapshot.save(snapshot, trained, loader.getContents());
+		ExternalEnvironment restored = createEnvironment(loader.getTagDictionary());
+		TrainingSnapshot.load(snapshot, restored);
+		assertSameState(trained, restored);
+		//the temporary file of the save does not stay
+		String[] files = data.getDir().list();
+		Arrays.sort(files);
+		assertEquals(Arrays.asList("snapshot-ps.csv", "snapshot-tags.csv", "training.snap"), Arrays.asList(files));
+	}
+
+	/**
+	 * Creates an untrained environment of the SNAP network
+	 * @param dictionary dictionary of the tags
+	 * @return environment whose agents have not learned anything
+	 */
+	private static ExternalEnvironment createEnvironment(TagDictionary dictionary) {
+		SimulationContext context = new SimulationContext();
+		context.setTagDictionary(dictionary);
+		context.setRandom(new SplittableRandom(1));
+		ExternalEnvironment env = new ExternalEnvironment(Arrays.asList(RelationType.values()), context);
+		new SnapDataLoader().loadData(env, TestData.FEATURES, TestData.EDGES);
+		return env;
+	}
+
+	private static void assertSameState(ExternalEnvironment expected, ExternalEnvironment actual) {
+		assertEquals(expected.getAgentCount(), actual.getAgentCount());
+		boolean learned = false;
+		for (int agentId = 0; agentId < expected.getAgentCount(); agentId++) {
+			Agent x = expected.getAgent(agentId);
+			Agent y = actual.getAgent(agentId);
+			assertEquals(x.getExternalId(), y.getExternalId());
+			assertEquals(x.getTagTable().toString(), y.getTagTable().toString());
+			assertEquals(x.getExternalTagTable().toString(), y.getExternalTagTable().toString());
+			assertEquals(x.getTrusts(expected), y.getTrusts(actual));
+			learned |= x.getTagTable().size() > 0;
+		}
+		assertTrue("agents have learned nothing to compare", learned);
+	}
+
+	private static List<Long> getContentIds(List<Content> contents) {
+		List<Long> ids = new ArrayList<>();
+		for(Content content : contents) {
+			ids.add(content.getId());
+		}
+		return ids;
+	}
+
+}
@@ -0,0 +1,109 @@
+package model.network;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import model.experiment.SimulationContext;
+import model.loader.SnapDataLoader;
+import model.loader.TestData;
+
+/**
+ * Adjacency lists of the compressed sparse row graph and the positions of the reverse relations.
+ * @author cankurtan
+ *
+ */
+public class RelationGraphTest {
+
+	@Test
+	public void testEdgesAreOrderedByDestination() {
+		RelationGraph graph = new RelationGraph.Builder()
+				.addRelation(1, 3, RelationType.FRIEND)
+				.addRelation(1, 0, RelationType.FRIEND)
+				.addRelation(1, 2, RelationType.FRIEND)
+				.addRelation(3, 1, RelationType.FRIEND)
+				.build(5);
+		assertEquals(5, graph.getNodeCount());
+		assertEquals(4, graph.getEdgeCount());
+		assertEquals(2, graph.getSourceCount());
+		assertEquals(graph.getStart(1), graph.getEnd(0));
+		assertEquals(3, graph.getEnd(1) - graph.getStart(1));
+		int[] neighbours = new int[3];
+		for (int edge = graph.getStart(1); edge < graph.getEnd(1); edge++) {
+			neighbours[edge - graph.getStart(1)] = graph.getNeighbour(edge);
+			assertEquals(RelationType.FRIEND.getId(), graph.getType(edge));
+		}
+		assertEquals("[0, 2, 3]", Arrays.toString(neighbours));
+		//agents without relations have empty adjacency lists
+		assertEquals(graph.getStart(4), graph.getEnd(4));
+	}
+
+	@Test
+	public void testRepeatedRelationsAreMerged() {
+		RelationGraph graph = new RelationGraph.Builder()
+				.addRelation(0, 1, RelationType.FRIEND)
+				.addRelation(0, 1, RelationType.FRIEND)
+				.build(2);
+		assertEquals(1, graph.getEdgeCount());
+	}
+
+	@Test
+	public void testFindEdge() {
+		RelationGraph graph = new RelationGraph.Builder()
+				.addRelation(0, 2, RelationType.FRIEND)
+				.addRelation(2, 0, RelationType.FRIEND)
+				.build(3);
+		assertEquals(graph.getStart(0), graph.findEdge(0, 2));
+		assertEquals(graph.getStart(2), graph.findEdge(2, 0));
+		assertEquals(RelationGraph.NOT_FOUND, graph.findEdge(0, 1));
+		assertEquals(RelationGraph.NOT_FOUND, graph.findEdge(1, 0));
+		assertEquals(RelationGraph.NOT_FOUND, graph.findEdge(-1, 0));
+		assertEquals(RelationGraph.NOT_FOUND, graph.findEdge(3, 0));
+	}
+
+	@Test
+	public void testReversePositions() {
+		RelationGraph graph = new RelationGraph.Builder()
+				.addRelation(0, 1, RelationType.FRIEND)
+				.addRelation(0, 2, RelationType.FRIEND)
+				.addRelation(2, 0, RelationType.FRIEND)
+				.addRelation(1, 2, RelationType.FRIEND)
+				.addRelation(2, 1, RelationType.FRIEND)
+				.build(3);
+		//agent 1 has no relation back to agent 0
+		assertEquals(RelationGraph.NOT_FOUND, graph.getReversePosition(graph.findEdge(0, 1)));
+		//agent 0 is the first neighbour of agent 2, agent 1 is the second
+		assertEquals(0, graph.getReversePosition(graph.findEdge(0, 2)));
+		assertEquals(1, graph.getReversePosition(graph.findEdge(1, 2)));
+		//agent 2 is the second neighbour of agent 0 and the only one of agent 1
+		assertEquals(1, graph.getReversePosition(graph.findEdge(2, 0)));
+		assertEquals(0, graph.getReversePosition(graph.findEdge(2, 1)));
+	}
+
+	@Test
+	public void testReversePositionsOfTheDataSet() {
+		Environment env = new Environment(Arrays.asList(RelationType.values()), new SimulationContext());
+		new SnapDataLoader().loadData(env, TestData.FEATURES, TestData.EDGES);
+		RelationGraph graph = env.getRelations();
+		for (int agent = 0; agent < graph.getNodeCount(); agent++) {
+			for (int edge = graph.getStart(agent); edge < graph.getEnd(agent); edge++) {
+				int neighbour = graph.getNeighbour(edge);
+				int position = graph.getReversePosition(edge);
+				if(position == RelationGraph.NOT_FOUND) {
+					assertEquals(RelationGraph.NOT_FOUND, graph.findEdge(neighbour, agent));
+				}
+				else {
+					assertEquals(agent, graph.getNeighbour(graph.getStart(neighbour) + position));
+				}
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRelationOutsideTheGraphIsRejected() {
+		new RelationGraph.Builder().addRelation(0, 3, RelationType.FRIEND).build(3);
+	}
+
+}
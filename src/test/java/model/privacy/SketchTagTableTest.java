@@ -0,0 +1,109 @@
+package model.privacy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import model.experiment.SimulationContext;
+import model.network.RelationType;
+
+/**
+ * Estimations of the count-min sketch are bounded by the exact values and the error bound of its width.
+ * @author cankurtan
+ *
+ */
+public class SketchTagTableTest {
+
+	private static final int N_TAGS = 2000;
+
+	@Test
+	public void testSupportIsWithinTheErrorBound() {
+		SketchTagTable sketch = new SketchTagTable(new SimulationContext(), 128, 4);
+		double[] supports = new double[N_TAGS];
+		Random random = new Random(5);
+		int total = 20000;
+		for (int c = 0; c < total; c++) {
+			//skewed tag frequencies, as in the real data
+			int tag = (int) (N_TAGS * Math.pow(random.nextDouble(), 3));
+			sketch.updateTable(tag, decisionsOf(random.nextInt(2)));
+			supports[tag]++;
+		}
+		int outOfBound = 0;
+		for (int tag = 0; tag < N_TAGS; tag++) {
+			double estimation = sketch.getSupportOfTag(tag);
+			//counters only grow, so a tag is never underestimated
+			assertTrue(estimation >= supports[tag]);
+			if(estimation - supports[tag] > sketch.getErrorBound() * total) {
+				outOfBound++;
+			}
+		}
+		//the bound fails with probability e^-depth for each tag
+		double failureRatio = 1 - sketch.getConfidence();
+		assertTrue(outOfBound + " tags are out of the bound", outOfBound <= 2 * failureRatio * N_TAGS);
+	}
+
+	@Test
+	public void testUnseenTagOfAnEmptySketch() {
+		SketchTagTable sketch = new SketchTagTable(new SimulationContext(), 64, 2);
+		assertEquals(0, sketch.size());
+		assertEquals(0, sketch.getSupportOfTag(3), 0);
+		sketch.updateTable(3, decisionsOf(1));
+		assertEquals(1, sketch.getSupportOfTag(3), 0);
+		assertEquals(1, sketch.size());
+	}
+
+	@Test
+	public void testSizeIsEstimatedByLinearCounting() {
+		SketchTagTable sketch = new SketchTagTable(new SimulationContext(), 4096, 4);
+		int nTags = 1000;
+		for (int tag = 0; tag < nTags; tag++) {
+			sketch.updateTable(tag, decisionsOf(tag % 2));
+			sketch.updateTable(tag, decisionsOf(tag % 2));
+		}
+		assertEquals(nTags, sketch.size(), 0.05 * nTags);
+	}
+
+	@Test
+	public void testWidthForError() {
+		assertEquals(272, SketchTagTable.widthForError(0.01));
+		for(double error : new double[] {0.5, 0.1, 0.01, 0.003}) {
+			int width = SketchTagTable.widthForError(error);
+			SketchTagTable sketch = new SketchTagTable(new SimulationContext(), width, 1);
+			assertTrue(sketch.getErrorBound() <= error);
+			assertTrue(Math.E / (width - 1) > error);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWidthForZeroError() {
+		SketchTagTable.widthForError(0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWidthForErrorOfOne() {
+		SketchTagTable.widthForError(1);
+	}
+
+	@Test
+	public void testMemory() {
+		long counters = 272L * 4 * (1 + RelationType.values().length);
+		assertEquals(Double.BYTES * counters, SketchTagTable.getMemory(272, 4));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testSketchDoesNotDecay() {
+		SketchTagTable sketch = new SketchTagTable(new SimulationContext(), 64, 2);
+		sketch.setHalfLife(0);
+		sketch.setHalfLife(100);
+	}
+
+	private static int[] decisionsOf(int decision) {
+		int[] decisions = new int[RelationType.values().length];
+		decisions[0] = decision;
+		return decisions;
+	}
+
+}
@@ -0,0 +1,124 @@
+package model.privacy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import model.experiment.SimulationContext;
+import model.network.RelationType;
+
+/**
+ * Values of a decaying tag table must be the values decayed after every content,
+ * although the table only rescales them once in a while.
+ * @author cankurtan
+ *
+ */
+public class TagTableDecayTest {
+
+	private static final double DELTA = 1e-9;
+	private static final int N_TAGS = 8;
+
+	@Test
+	public void testRenormalizationKeepsTheDecayedValues() {
+		double halfLife = 10;
+		double decay = Math.pow(0.5, 1 / halfLife);
+		TagTable table = new TagTable(new SimulationContext());
+		table.setHalfLife(halfLife);
+		//values of the tags decayed by hand after every content
+		double[] supports = new double[N_TAGS];
+		double[] effects = new double[N_TAGS];
+		Random random = new Random(3);
+		//every tag is seen often enough to stay in the table
+		for (int c = 0; c < 500; c++) {
+			for (int tag = 0; tag < N_TAGS; tag++) {
+				if(random.nextInt(3) == 0 || c % 10 == tag) {
+					int decision = random.nextInt(2);
+					table.updateTable(tag, decisionsOf(decision));
+					supports[tag]++;
+					effects[tag] += decision;
+				}
+			}
+			table.endContent();
+			for (int tag = 0; tag < N_TAGS; tag++) {
+				supports[tag] *= decay;
+				effects[tag] *= decay;
+			}
+			assertTrue(table.getScale() < TagTable.RENORMALIZE_SCALE);
+			double totalEffect = 0;
+			int seen = 0;
+			for (int tag = 0; tag < N_TAGS; tag++) {
+				assertEquals(supports[tag], table.getSupportOfTag(tag), DELTA);
+				totalEffect += effects[tag];
+				seen += supports[tag] > 0 ? 1 : 0;
+			}
+			assertEquals(seen, table.size());
+			assertEquals(totalEffect / seen, table.getAverageEffects()[0], DELTA);
+		}
+	}
+
+	@Test
+	public void testTagsThatAreNotSeenAreRemoved() {
+		TagTable table = new TagTable(new SimulationContext());
+		table.setHalfLife(2);
+		table.updateTable(0, decisionsOf(1));
+		table.endContent();
+		for (int c = 0; c < 30; c++) {
+			table.updateTable(1 + c % 3, decisionsOf(c % 2));
+			table.endContent();
+		}
+		//support of tag 0 is 2^-15 by now
+		assertEquals(3, table.size());
+		assertEquals(0, table.getSupportOfTag(0), 0);
+		for (int tag = 1; tag <= 3; tag++) {
+			assertTrue(table.getSupportOfTag(tag) >= TagTable.MIN_DECAYED_SUPPORT);
+		}
+	}
+
+	@Test
+	public void testTableWithoutHalfLifeDoesNotDecay() {
+		TagTable table = new TagTable(new SimulationContext());
+		table.setHalfLife(0);
+		for (int c = 0; c < 100; c++) {
+			table.updateTable(c % 4, decisionsOf(c % 2));
+			table.endContent();
+		}
+		assertEquals(1, table.getScale(), 0);
+		for (int tag = 0; tag < 4; tag++) {
+			assertEquals(25, table.getSupportOfTag(tag), 0);
+		}
+	}
+
+	@Test
+	public void testDecayDoesNotChangeTheEstimationsOfEqualWeights() {
+		//contents that all come at once weigh the same in a decaying table
+		TagTable decaying = new TagTable(new SimulationContext());
+		decaying.setHalfLife(5);
+		TagTable exact = new TagTable(new SimulationContext());
+		for (int c = 0; c < 12; c++) {
+			decaying.updateTable(c % 6, decisionsOf(c % 3 == 0 ? 1 : 0));
+			exact.updateTable(c % 6, decisionsOf(c % 3 == 0 ? 1 : 0));
+		}
+		decaying.endContent();
+		int[] tags = {0, 1, 2, 7};
+		double[] decayingConfs = new double[RelationType.values().length];
+		double[] exactConfs = new double[RelationType.values().length];
+		double[] decayingAvgs = new double[RelationType.values().length];
+		double[] exactAvgs = new double[RelationType.values().length];
+		decaying.estimateConfidences(tags, decayingConfs, decayingAvgs);
+		exact.estimateConfidences(tags, exactConfs, exactAvgs);
+		for (int i = 0; i < exactConfs.length; i++) {
+			assertEquals(exactConfs[i], decayingConfs[i], DELTA);
+			assertEquals(exactAvgs[i], decayingAvgs[i], DELTA);
+		}
+	}
+
+	private static int[] decisionsOf(int decision) {
+		int[] decisions = new int[RelationType.values().length];
+		decisions[0] = decision;
+		return decisions;
+	}
+
+}
@@ -0,0 +1,96 @@
+package utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Lookups of the open addressing index, including the keys that collide in the lower bits.
+ * @author cankurtan
+ *
+ */
+public class IntIndexTest {
+
+	@Test
+	public void testEmptyIndexFindsNothing() {
+		IntIndex index = new IntIndex();
+		assertEquals(0, index.size());
+		assertEquals(IntIndex.NOT_FOUND, index.get(0));
+		assertEquals(IntIndex.NOT_FOUND, index.get(12345));
+		assertArrayEquals(new int[0], index.getKeysBySlot());
+	}
+
+	@Test
+	public void testGetReturnsTheSlotOfEveryKey() {
+		IntIndex index = new IntIndex();
+		//keys that share their lower bits collide before they are scrambled
+		int n = 5000;
+		for (int slot = 0; slot < n; slot++) {
+			index.put(slot * 1024, slot);
+		}
+		assertEquals(n, index.size());
+		for (int slot = 0; slot < n; slot++) {
+			assertEquals(slot, index.get(slot * 1024));
+			assertEquals(IntIndex.NOT_FOUND, index.get(slot * 1024 + 1));
+		}
+	}
+
+	@Test
+	public void testKeysAreListedBySlot() {
+		IntIndex index = new IntIndex();
+		int[] keys = {42, 7, 1000000, 0, 13};
+		for (int slot = 0; slot < keys.length; slot++) {
+			index.put(keys[slot], slot);
+		}
+		assertArrayEquals(keys, index.getKeysBySlot());
+	}
+
+	@Test
+	public void testCopyIsIndependent() {
+		IntIndex index = new IntIndex();
+		index.put(3, 0);
+		IntIndex copy = index.copy();
+		copy.put(5, 1);
+		index.put(8, 1);
+		assertEquals(0, copy.get(3));
+		assertEquals(1, copy.get(5));
+		assertEquals(IntIndex.NOT_FOUND, copy.get(8));
+		assertEquals(IntIndex.NOT_FOUND, index.get(5));
+		assertEquals(1, index.get(8));
+	}
+
+	@Test
+	public void testClearRemovesAllTheKeys() {
+		IntIndex index = new IntIndex();
+		for (int slot = 0; slot < 100; slot++) {
+			index.put(slot, slot);
+		}
+		index.clear();
+		assertEquals(0, index.size());
+		for (int key = 0; key < 100; key++) {
+			assertEquals(IntIndex.NOT_FOUND, index.get(key));
+		}
+		index.put(50, 0);
+		assertEquals(0, index.get(50));
+	}
+
+	@Test
+	public void testTrimToSizeKeepsTheKeys() {
+		IntIndex index = new IntIndex();
+		for (int slot = 0; slot < 1000; slot++) {
+			index.put(slot, slot);
+		}
+		index.clear();
+		for (int slot = 0; slot < 10; slot++) {
+			index.put(slot * 31, slot);
+		}
+		index.trimToSize();
+		assertEquals(10, index.size());
+		for (int slot = 0; slot < 10; slot++) {
+			assertEquals(slot, index.get(slot * 31));
+		}
+		assertEquals(IntIndex.NOT_FOUND, index.get(1));
+	}
+
+}